@@ -0,0 +1,63 @@
+package ca.onepoint.yul.benchmark;
+
+import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.service.IAvatarService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping of the avatar entities to DTOs behind /api/avatar/, the repository returning the rows from memory,
+ * and the range and nearest-neighbour queries of the spatial index behind /api/avatar/within and /api/avatar/nearest.
+ * mvn -Pbenchmark clean compile exec:exec -Djmh.args="AvatarServiceBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AvatarServiceBenchmark {
+
+    @Param({"10000", "100000"})
+    public int avatars;
+
+    private static final List<Integer> TYPES = Collections.singletonList(1);
+
+    private AnnotationConfigApplicationContext context;
+    private IAvatarService avatarService;
+
+    @Setup
+    public void setUp() {
+        context = BenchmarkContext.create(DataSqlFixtures.montreal(), DataSqlFixtures.avatars(avatars));
+        avatarService = context.getBean(IAvatarService.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<AvatarDto> mapAvatarToDto() {
+        return avatarService.getAllAvatars();
+    }
+
+    @Benchmark
+    public List<AvatarDto> within() throws Exception {
+        return avatarService.getAvatarsWithin(15, 15, 2, null);
+    }
+
+    @Benchmark
+    public List<AvatarDto> nearest() throws Exception {
+        return avatarService.getNearestAvatars(15, 15, 10, null);
+    }
+
+    @Benchmark
+    public List<AvatarDto> nearestOfType() throws Exception {
+        return avatarService.getNearestAvatars(15, 15, 10, TYPES);
+    }
+}
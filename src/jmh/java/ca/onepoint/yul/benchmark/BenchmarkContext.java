@@ -0,0 +1,88 @@
+package ca.onepoint.yul.benchmark;
+
+import ca.onepoint.yul.configuration.PathFindingConfig;
+import ca.onepoint.yul.configuration.SimulationConfig;
+import ca.onepoint.yul.entity.Avatar;
+import ca.onepoint.yul.entity.Map;
+import ca.onepoint.yul.grid.MapGridCache;
+import ca.onepoint.yul.occupancy.AvatarPositionWriter;
+import ca.onepoint.yul.occupancy.AvatarSpatialIndex;
+import ca.onepoint.yul.occupancy.OccupancyGrid;
+import ca.onepoint.yul.pathfinding.DistanceFieldCache;
+import ca.onepoint.yul.pathfinding.HierarchicalGraphCache;
+import ca.onepoint.yul.pathfinding.MapGraphCache;
+import ca.onepoint.yul.pathfinding.PathCache;
+import ca.onepoint.yul.repository.AvatarRepository;
+import ca.onepoint.yul.repository.MapRepository;
+import ca.onepoint.yul.repository.TransitLinkRepository;
+import ca.onepoint.yul.service.impl.AvatarServiceImpl;
+import ca.onepoint.yul.service.impl.MapServiceImpl;
+import ca.onepoint.yul.service.impl.PathFindingServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The services of the application wired by Spring as in production, on top of in-memory
+ * repositories : the benchmarks measure the Java code, not the database.
+ */
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * @param properties application properties overridden for the benchmark, as key=value
+     */
+    static AnnotationConfigApplicationContext create(Map map, List<Avatar> avatars, String... properties) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        HashMap<String, Object> overrides = new HashMap<>();
+        for (String property : properties) {
+            overrides.put(property.substring(0, property.indexOf('=')), property.substring(property.indexOf('=') + 1));
+        }
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("benchmark", overrides));
+        context.registerBean(MapRepository.class, () -> repository(MapRepository.class, map, avatars));
+        context.registerBean(AvatarRepository.class, () -> repository(AvatarRepository.class, map, avatars));
+        context.registerBean(TransitLinkRepository.class, () -> repository(TransitLinkRepository.class, map, avatars));
+        context.registerBean(MeterRegistry.class, SimpleMeterRegistry::new);
+        context.register(PathFindingConfig.class, SimulationConfig.class, MapGridCache.class, MapGraphCache.class, DistanceFieldCache.class,
+                HierarchicalGraphCache.class, PathCache.class, OccupancyGrid.class, AvatarSpatialIndex.class, AvatarPositionWriter.class,
+                MapServiceImpl.class, AvatarServiceImpl.class, PathFindingServiceImpl.class);
+        context.refresh();
+        return context;
+    }
+
+    private static <T> T repository(Class<T> type, Map map, List<Avatar> avatars) {
+        Object repository = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "findAllMap":
+                    return Collections.singletonList(map);
+                case "findByIdMap":
+                    return map;
+                case "findFirstMapId":
+                    return Long.valueOf(map.getId());
+                case "findAll":
+                    return avatars;
+                case "findByMapIdOrderById":
+                    return DataSqlFixtures.transitLinks();
+                case "updatePositions":
+                    return ((List<?>) args[0]).size();
+                case "toString":
+                    return "In-memory " + type.getSimpleName();
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+        return type.cast(repository);
+    }
+}
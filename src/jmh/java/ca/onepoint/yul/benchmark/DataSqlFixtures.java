@@ -0,0 +1,168 @@
+package ca.onepoint.yul.benchmark;
+
+import ca.onepoint.yul.entity.Avatar;
+import ca.onepoint.yul.entity.Map;
+import ca.onepoint.yul.entity.TransitLink;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Rows inserted by data.sql, read from the classpath, so that the benchmarks run on the
+ * same map and avatars as the application.
+ */
+final class DataSqlFixtures {
+
+    private static final List<Map> MAPS = new ArrayList<>();
+    private static final List<Avatar> AVATARS = new ArrayList<>();
+    private static final List<TransitLink> TRANSIT_LINKS = new ArrayList<>();
+
+    static {
+        String script;
+        try (InputStream in = DataSqlFixtures.class.getResourceAsStream("/data.sql")) {
+            if (in == null) {
+                throw new IllegalStateException("data.sql not found on the classpath");
+            }
+            script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        for (java.util.Map<String, String> row : rows(script, "map")) {
+            Map map = new Map();
+            map.setId(MAPS.size() + 1);
+            map.setName(row.get("name"));
+            map.setVersion(0);
+            // H2 gives the text inserted in the JSON column back as a JSON string
+            map.setMap('"' + row.get("map").replace("\\", "\\\\").replace("\"", "\\\"") + '"');
+            MAPS.add(map);
+        }
+        for (java.util.Map<String, String> row : rows(script, "avatar")) {
+            AVATARS.add(avatar(AVATARS.size() + 1, row));
+        }
+        for (java.util.Map<String, String> row : rows(script, "transit_link")) {
+            TransitLink link = new TransitLink();
+            link.setId(TRANSIT_LINKS.size() + 1);
+            link.setMapId(Integer.valueOf(row.get("map_id")));
+            link.setFromX(Integer.valueOf(row.get("from_x")));
+            link.setFromY(Integer.valueOf(row.get("from_y")));
+            link.setToX(Integer.valueOf(row.get("to_x")));
+            link.setToY(Integer.valueOf(row.get("to_y")));
+            TRANSIT_LINKS.add(link);
+        }
+    }
+
+    private DataSqlFixtures() {
+    }
+
+    static Map montreal() {
+        return MAPS.get(0);
+    }
+
+    /**
+     * The subway of data.sql, the benchmark maps all having the id of Montreal.
+     */
+    static List<TransitLink> transitLinks() {
+        return TRANSIT_LINKS;
+    }
+
+    /**
+     * The avatars of data.sql repeated until there are count of them, spread over a 30x30 map.
+     */
+    static List<Avatar> avatars(int count) {
+        List<Avatar> avatars = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Avatar model = AVATARS.get(i % AVATARS.size());
+            Avatar avatar = new Avatar();
+            avatar.setId(i + 1);
+            avatar.setName(model.getName() + i);
+            avatar.setType(model.getType());
+            avatar.setImage(model.getImage());
+            avatar.setWaiting(model.getWaiting());
+            avatar.setMain(i == 0 ? model.getMain() : 0);
+            avatar.setX((model.getX() + i) % 30);
+            avatar.setY((model.getY() + i / 30) % 30);
+            avatars.add(avatar);
+        }
+        return avatars;
+    }
+
+    private static Avatar avatar(int id, java.util.Map<String, String> row) {
+        Avatar avatar = new Avatar();
+        avatar.setId(id);
+        avatar.setName(row.get("name"));
+        avatar.setType(Integer.valueOf(row.get("type")));
+        avatar.setImage(row.get("image"));
+        avatar.setWaiting(Integer.valueOf(row.get("waiting")));
+        avatar.setMain(Integer.valueOf(row.get("main")));
+        avatar.setX(Integer.valueOf(row.get("x")));
+        avatar.setY(Integer.valueOf(row.get("y")));
+        return avatar;
+    }
+
+    /**
+     * Values of the "INSERT INTO table (columns) values (...), (...)" statements of a table, by column.
+     * Only string literals and numbers are supported, that is all data.sql uses.
+     */
+    private static List<java.util.Map<String, String>> rows(String script, String table) {
+        List<java.util.Map<String, String>> rows = new ArrayList<>();
+        String prefix = "INSERT INTO " + table;
+        int statement = 0;
+        while ((statement = script.indexOf(prefix, statement)) >= 0) {
+            int open = script.indexOf('(', statement);
+            int close = script.indexOf(')', open);
+            String[] columns = script.substring(open + 1, close).split(",");
+            int position = script.indexOf("values", close) + "values".length();
+            while (true) {
+                position = skipBlanks(script, position);
+                if (script.charAt(position) != '(') {
+                    break;
+                }
+                java.util.Map<String, String> row = new HashMap<>();
+                position++;
+                for (String column : columns) {
+                    position = skipBlanks(script, position);
+                    StringBuilder value = new StringBuilder();
+                    if (script.charAt(position) == '\'') {
+                        position++;
+                        while (true) {
+                            char c = script.charAt(position++);
+                            if (c == '\'') {
+                                if (script.charAt(position) != '\'') {
+                                    break;
+                                }
+                                position++;
+                            }
+                            value.append(c);
+                        }
+                    } else {
+                        while (",)".indexOf(script.charAt(position)) < 0) {
+                            value.append(script.charAt(position++));
+                        }
+                    }
+                    row.put(column.trim(), value.toString().trim());
+                    position = skipBlanks(script, position) + 1;
+                }
+                rows.add(row);
+                position = skipBlanks(script, position);
+                if (script.charAt(position) != ',') {
+                    break;
+                }
+                position++;
+            }
+            statement = position;
+        }
+        return rows;
+    }
+
+    private static int skipBlanks(String script, int position) {
+        while (Character.isWhitespace(script.charAt(position))) {
+            position++;
+        }
+        return position;
+    }
+}
@@ -0,0 +1,103 @@
+package ca.onepoint.yul.benchmark;
+
+import ca.onepoint.yul.entity.Map;
+import ca.onepoint.yul.grid.MapGrid;
+
+import java.util.Random;
+
+/**
+ * Map rows used by the benchmarks.
+ */
+final class MapFixtures {
+
+    private static final String[] IMAGES = {
+            "../assets/images/route_vert.png", "../assets/images/route_horizontal.png",
+            "../assets/images/pvm.jpeg", "../assets/images/bonsecours.png",
+            "../assets/images/1000_gauchetiere.png", "../assets/images/udem.png",
+            "../assets/images/planetarium.png", "../assets/images/metro.png",
+    };
+
+    private MapFixtures() {
+    }
+
+    /**
+     * A size x size city : a road every 4 squares in both directions, buildings in between,
+     * returned the way H2 gives the JSON column back (a JSON string wrapping the grid).
+     * The square (3, 3) is a road closed in by buildings, the target of the unreachable routes.
+     */
+    static Map syntheticMap(int size) {
+        Random random = new Random(size);
+        StringBuilder json = new StringBuilder(size * size * 60);
+        json.append('[');
+        for (int y = 0; y < size; y++) {
+            json.append(y == 0 ? "[" : ",[");
+            for (int x = 0; x < size; x++) {
+                boolean road = x % 4 == 1 || y % 4 == 1 || (x == 3 && y == 3);
+                String value = road ? (random.nextInt(40) == 0 ? "3" : "1") : "0";
+                String image = road ? IMAGES[random.nextInt(2)] : IMAGES[2 + random.nextInt(IMAGES.length - 2)];
+                if (x > 0) {
+                    json.append(',');
+                }
+                json.append("{\"value\":\"").append(value).append("\",\"image\":\"").append(image).append("\"}");
+            }
+            json.append(']');
+        }
+        json.append(']');
+
+        Map map = new Map();
+        map.setId(1);
+        map.setName("Synthetic " + size + "x" + size);
+        map.setVersion(0);
+        map.setMap('"' + json.toString().replace("\"", "\\\"") + '"');
+        return map;
+    }
+
+    /**
+     * Open city : wide boulevards, a 3x3 building every 12 squares.
+     */
+    static MapGrid boulevards(int size) {
+        byte[] values = new byte[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                boolean building = x % 12 < 3 && y % 12 < 3;
+                values[y * size + x] = (byte) (building ? 0 : 1);
+            }
+        }
+        return grid(size, values);
+    }
+
+    /**
+     * Dense downtown : one square wide streets between 1 square buildings, some streets closed.
+     */
+    static MapGrid downtown(int size) {
+        Random random = new Random(size);
+        byte[] values = new byte[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                boolean street = (x % 2 == 1 || y % 2 == 1) && random.nextInt(10) != 0;
+                values[y * size + x] = (byte) (street ? 1 : 0);
+            }
+        }
+        return grid(size, values);
+    }
+
+    private static MapGrid grid(int size, byte[] values) {
+        return new MapGrid(1L, "Synthetic", 0, size, size, values, new short[values.length], new String[]{IMAGES[0]});
+    }
+
+    /**
+     * Random (from, to) pairs of walkable squares, from in even indexes and to in odd ones.
+     */
+    static int[] walkablePairs(MapGrid grid, int count, long seed) {
+        Random random = new Random(seed);
+        int[] pairs = new int[2 * count];
+        for (int i = 0; i < pairs.length; i++) {
+            int cell;
+            do {
+                cell = random.nextInt(grid.getValues().length);
+            } while (grid.getValues()[cell] != 1);
+            pairs[i] = cell;
+        }
+        return pairs;
+    }
+}
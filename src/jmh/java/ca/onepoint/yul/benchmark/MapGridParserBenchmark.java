@@ -0,0 +1,73 @@
+package ca.onepoint.yul.benchmark;
+
+import ca.onepoint.yul.dto.SquareDto;
+import ca.onepoint.yul.entity.Map;
+import ca.onepoint.yul.grid.MapGrid;
+import ca.onepoint.yul.grid.MapGridCodec;
+import ca.onepoint.yul.grid.MapGridParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.configurationprocessor.json.JSONArray;
+import org.springframework.boot.configurationprocessor.json.JSONException;
+import org.springframework.boot.configurationprocessor.json.JSONObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse time of the map column, streaming parser against the former org.json parsing, and decoding
+ * of the binary grid column the maps are migrated to.
+ * Run with the gc profiler to get the allocation per parse (gc.alloc.rate.norm) :
+ * mvn -Pbenchmark clean compile exec:exec -Djmh.args="MapGridParser -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapGridParserBenchmark {
+
+    @Param({"30", "250", "1000", "2000"})
+    public int size;
+
+    private Map map;
+    private Map binaryMap;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        map = MapFixtures.syntheticMap(size);
+        binaryMap = new Map();
+        binaryMap.setId(map.getId());
+        binaryMap.setName(map.getName());
+        binaryMap.setVersion(map.getVersion());
+        binaryMap.setGrid(MapGridCodec.encode(MapGridParser.parse(map)));
+    }
+
+    @Benchmark
+    public MapGrid streaming() throws JsonProcessingException {
+        return MapGridParser.parse(map);
+    }
+
+    @Benchmark
+    public MapGrid binary() throws JsonProcessingException {
+        return MapGridParser.parse(binaryMap);
+    }
+
+    @Benchmark
+    public SquareDto[][] orgJson() throws JSONException {
+        JSONArray jsonArr = new JSONArray(map.getMap().replace("\\", "").substring(1, map.getMap().replace("\\", "").length() - 1));
+        SquareDto[][] squareDtoList = new SquareDto[jsonArr.length()][];
+        for (int i = 0; i < jsonArr.length(); i++) {
+            JSONArray jsonArray = jsonArr.getJSONArray(i);
+            squareDtoList[i] = new SquareDto[jsonArray.length()];
+            for (int j = 0; j < jsonArray.length(); j++) {
+                JSONObject jsonObj = jsonArray.getJSONObject(j);
+                SquareDto squareDto = new SquareDto();
+                squareDto.setImage((String) jsonObj.get("image"));
+                squareDto.setValue(Integer.valueOf((String) jsonObj.get("value")));
+                squareDtoList[i][j] = squareDto;
+            }
+        }
+        return squareDtoList;
+    }
+}
@@ -0,0 +1,68 @@
+package ca.onepoint.yul.benchmark;
+
+import ca.onepoint.yul.dto.MapDto;
+import ca.onepoint.yul.dto.MapPaletteDto;
+import ca.onepoint.yul.entity.Map;
+import ca.onepoint.yul.service.IMapService;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the map DTO served by /api/map/{id} from the cached grid, on the map of data.sql and on
+ * synthetic cities, and its JSON : a SquareDto per square, or the palette and flat arrays of ?format=palette.
+ * mvn -Pbenchmark clean compile exec:exec -Djmh.args="MapServiceBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MapServiceBenchmark {
+
+    @Param({"MONTREAL", "SYNTHETIC_250", "SYNTHETIC_1000"})
+    public String map;
+
+    private AnnotationConfigApplicationContext context;
+    private IMapService mapService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        Map row = "MONTREAL".equals(map) ? DataSqlFixtures.montreal() : MapFixtures.syntheticMap(Integer.parseInt(map.substring("SYNTHETIC_".length())));
+        context = BenchmarkContext.create(row, Collections.emptyList());
+        mapService = context.getBean(IMapService.class);
+        // The grid is parsed once here, the benchmark measures the DTO built on each request
+        mapService.getMapById(1L);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public MapDto mapGridToDto() throws JsonProcessingException {
+        return mapService.getMapById(1L);
+    }
+
+    @Benchmark
+    public MapPaletteDto mapGridToPaletteDto() throws JsonProcessingException {
+        return mapService.getMapPaletteById(1L);
+    }
+
+    @Benchmark
+    public byte[] squaresJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(mapService.getMapById(1L));
+    }
+
+    @Benchmark
+    public byte[] paletteJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(mapService.getMapPaletteById(1L));
+    }
+}
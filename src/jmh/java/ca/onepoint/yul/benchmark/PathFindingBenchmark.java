@@ -0,0 +1,71 @@
+package ca.onepoint.yul.benchmark;
+
+import ca.onepoint.yul.grid.MapGrid;
+import ca.onepoint.yul.pathfinding.AStarPathFinder;
+import ca.onepoint.yul.pathfinding.CellSet;
+import ca.onepoint.yul.pathfinding.HierarchicalGraph;
+import ca.onepoint.yul.pathfinding.JumpPointSearch;
+import ca.onepoint.yul.pathfinding.MapGraph;
+import ca.onepoint.yul.pathfinding.PathAlgorithm;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency per search, A* against Jump Point Search and HPA*, on open boulevards
+ * and on dense downtown streets. Each operation solves 64 random routes.
+ * mvn -Pbenchmark clean compile exec:exec -Djmh.args="PathFindingBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathFindingBenchmark {
+
+    private static final int ROUTES = 64;
+
+    @Param({"BOULEVARDS", "DOWNTOWN"})
+    public String terrain;
+
+    @Param({"256", "1024"})
+    public int size;
+
+    @Param({"ASTAR", "JPS", "HPA"})
+    public PathAlgorithm algorithm;
+
+    private MapGraph graph;
+    private CellSet blocked;
+    private HierarchicalGraph hierarchy;
+    private int[] routes;
+
+    @Setup
+    public void setUp() {
+        MapGrid grid = "BOULEVARDS".equals(terrain) ? MapFixtures.boulevards(size) : MapFixtures.downtown(size);
+        graph = new MapGraph(grid, new int[0], new int[0]);
+        blocked = new CellSet(graph.size());
+        routes = MapFixtures.walkablePairs(grid, ROUTES, 42);
+        hierarchy = new HierarchicalGraph(16);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUTES)
+    public void search(Blackhole blackhole) {
+        for (int i = 0; i < routes.length; i += 2) {
+            blackhole.consume(search(routes[i], routes[i + 1]));
+        }
+    }
+
+    private int[] search(int from, int to) {
+        switch (algorithm) {
+            case JPS:
+                return JumpPointSearch.findPath(graph, blocked, from, to, null);
+            case HPA:
+                return hierarchy.findPath(graph, blocked, 0, from, to);
+            default:
+                return AStarPathFinder.findPath(graph, blocked, from, to);
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package ca.onepoint.yul.benchmark;
+
+import ca.onepoint.yul.dto.PositionDto;
+import ca.onepoint.yul.entity.Map;
+import ca.onepoint.yul.grid.MapGrid;
+import ca.onepoint.yul.grid.MapGridCache;
+import ca.onepoint.yul.occupancy.OccupancyGrid;
+import ca.onepoint.yul.pathfinding.CellSet;
+import ca.onepoint.yul.pathfinding.MapGraph;
+import ca.onepoint.yul.pathfinding.MapGraphCache;
+import ca.onepoint.yul.pathfinding.PathAlgorithm;
+import ca.onepoint.yul.service.IPathFindingService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pedestrian request to /api/map/path-finding, from the map snapshot to the list of positions :
+ * an easy route (8 squares), the longest route from the start, and a target that can't be reached,
+ * which makes the search go through every square it can reach. The same request is served by the path
+ * cache, and searched by an application whose path cache keeps nothing. Targets are plain roads, shops
+ * would be served by their distance field.
+ * mvn -Pbenchmark clean compile exec:exec -Djmh.args="PathFindingServiceBenchmark"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathFindingServiceBenchmark {
+
+    private static final int PEDESTRIAN = 0;
+    private static final int EASY_DISTANCE = 8;
+
+    @Param({"MONTREAL", "SYNTHETIC_256"})
+    public String map;
+
+    @Param({"EASY", "HARD", "UNREACHABLE"})
+    public String query;
+
+    private AnnotationConfigApplicationContext context;
+    private AnnotationConfigApplicationContext uncachedContext;
+    private IPathFindingService pathFindingService;
+    private IPathFindingService uncachedPathFindingService;
+    private int fromX;
+    private int fromY;
+    private int toX;
+    private int toY;
+
+    @Setup
+    public void setUp() throws Exception {
+        Map row = "MONTREAL".equals(map) ? DataSqlFixtures.montreal() : MapFixtures.syntheticMap(256);
+        context = BenchmarkContext.create(row, DataSqlFixtures.avatars(1));
+        pathFindingService = context.getBean(IPathFindingService.class);
+        uncachedContext = BenchmarkContext.create(row, DataSqlFixtures.avatars(1), "yul.path-finding.path-cache.max-squares=0");
+        uncachedPathFindingService = uncachedContext.getBean(IPathFindingService.class);
+
+        MapGrid grid = context.getBean(MapGridCache.class).get(Long.valueOf(row.getId()));
+        MapGraph graph = context.getBean(MapGraphCache.class).get(grid, PEDESTRIAN);
+        CellSet blocked = context.getBean(OccupancyGrid.class).snapshot(grid).getBlocked();
+        int from = firstRoad(grid, blocked);
+        int to = pickTarget(graph, blocked, from, distances(graph, blocked, from));
+        fromX = from % grid.getWidth();
+        fromY = from / grid.getWidth();
+        toX = to % grid.getWidth();
+        toY = to / grid.getWidth();
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        uncachedContext.close();
+    }
+
+    @Benchmark
+    public List<PositionDto> cached() throws Exception {
+        return pathFindingService.findPath(null, PEDESTRIAN, fromX, fromY, toX, toY, PathAlgorithm.ASTAR);
+    }
+
+    @Benchmark
+    public List<PositionDto> uncached() throws Exception {
+        return uncachedPathFindingService.findPath(null, PEDESTRIAN, fromX, fromY, toX, toY, PathAlgorithm.ASTAR);
+    }
+
+    private static int firstRoad(MapGrid grid, CellSet blocked) {
+        for (int cell = 0; cell < grid.getValues().length; cell++) {
+            if (grid.getValues()[cell] == 1 && !blocked.contains(cell)) {
+                return cell;
+            }
+        }
+        throw new IllegalStateException("No road on the map");
+    }
+
+    /**
+     * Breadth first search from the start, -1 for the squares it can't reach.
+     */
+    private static int[] distances(MapGraph graph, CellSet blocked, int from) {
+        int[] distances = new int[graph.size()];
+        Arrays.fill(distances, -1);
+        int[] queue = new int[graph.size()];
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int head = 0;
+        int tail = 0;
+        distances[from] = 0;
+        queue[tail++] = from;
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int edge = offsets[cell]; edge < offsets[cell + 1]; edge++) {
+                int next = targets[edge];
+                if (distances[next] < 0 && !blocked.contains(next)) {
+                    distances[next] = distances[cell] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return distances;
+    }
+
+    private int pickTarget(MapGraph graph, CellSet blocked, int from, int[] distances) {
+        byte[] values = graph.getGrid().getValues();
+        int target = -1;
+        for (int cell = 0; cell < distances.length; cell++) {
+            if (values[cell] != 1 || !graph.isFree(cell, blocked)) {
+                continue;
+            }
+            switch (query) {
+                case "EASY":
+                    if (distances[cell] == EASY_DISTANCE) {
+                        return cell;
+                    }
+                    break;
+                case "HARD":
+                    if (target < 0 || distances[cell] > distances[target]) {
+                        target = cell;
+                    }
+                    break;
+                default:
+                    if (distances[cell] < 0) {
+                        return cell;
+                    }
+            }
+        }
+        if (target < 0) {
+            throw new IllegalStateException("No " + query + " target on " + map);
+        }
+        return target;
+    }
+}
@@ -0,0 +1,106 @@
+package ca.onepoint.yul.benchmark;
+
+import ca.onepoint.yul.dto.AvatarDeltaDto;
+import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.dto.AvatarMoveDto;
+import ca.onepoint.yul.simulation.ProgressBinaryConverter;
+import ca.onepoint.yul.entity.Avatar;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.MappingJackson2MessageConverter;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson serialization of the payloads sent to /topic/progress : the avatar moves as forwarded by
+ * /api/avatar/move-avatars before the deltas, the deltas of the same moves and the seconds of the clock.
+ * The deltas and the seconds are also encoded as sent to /topic/progress/binary.
+ * mvn -Pbenchmark clean compile exec:exec -Djmh.args="ProgressPayloadBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProgressPayloadBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int avatars;
+
+    private static final Integer SECONDS = 43200;
+
+    private MappingJackson2MessageConverter converter;
+    private ProgressBinaryConverter binaryConverter;
+    private MessageHeaders binaryHeaders;
+    private List<AvatarDto> moves;
+    private AvatarDeltaDto delta;
+
+    @Setup
+    public void setUp() {
+        converter = new MappingJackson2MessageConverter();
+        converter.setObjectMapper(Jackson2ObjectMapperBuilder.json().build());
+        binaryConverter = new ProgressBinaryConverter();
+        MessageHeaderAccessor accessor = new MessageHeaderAccessor();
+        accessor.setContentType(ProgressBinaryConverter.MIME_TYPE);
+        binaryHeaders = accessor.getMessageHeaders();
+        moves = new ArrayList<>(avatars);
+        for (Avatar avatar : DataSqlFixtures.avatars(avatars)) {
+            AvatarDto move = new AvatarDto();
+            move.setId(avatar.getId());
+            move.setName(avatar.getName());
+            move.setType(avatar.getType());
+            move.setImage(avatar.getImage());
+            move.setWaiting(avatar.getWaiting());
+            move.setMain(avatar.getMain());
+            move.setX(avatar.getX());
+            move.setY(avatar.getY());
+            moves.add(move);
+        }
+        List<AvatarMoveDto> changed = new ArrayList<>(avatars);
+        for (AvatarDto move : moves) {
+            AvatarMoveDto change = new AvatarMoveDto();
+            change.setId(move.getId());
+            change.setX(move.getX());
+            change.setY(move.getY());
+            change.setWaiting(move.getWaiting());
+            changed.add(change);
+        }
+        delta = new AvatarDeltaDto();
+        delta.setSequence(1);
+        delta.setAvatars(changed);
+        if (!delta.equals(binaryConverter.fromMessage(avatarDeltasBinary(), AvatarDeltaDto.class))) {
+            throw new IllegalStateException("The binary delta does not decode to the delta encoded");
+        }
+    }
+
+    @Benchmark
+    public Message<?> avatarMoves() {
+        return converter.toMessage(moves, null);
+    }
+
+    @Benchmark
+    public Message<?> avatarDeltas() {
+        return converter.toMessage(delta, null);
+    }
+
+    @Benchmark
+    public Message<?> avatarDeltasBinary() {
+        return binaryConverter.toMessage(delta, binaryHeaders);
+    }
+
+    @Benchmark
+    public Message<?> clockTick() {
+        return converter.toMessage(SECONDS, null);
+    }
+
+    @Benchmark
+    public Message<?> clockTickBinary() {
+        return binaryConverter.toMessage(SECONDS, binaryHeaders);
+    }
+}
@@ -0,0 +1,73 @@
+package ca.onepoint.yul.benchmark;
+
+import ca.onepoint.yul.YulCodeApplication;
+import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.entity.Map;
+import ca.onepoint.yul.repository.AvatarRepository;
+import ca.onepoint.yul.repository.MapRepository;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries of the custom repositories on the H2 database of the application, filled with data.sql
+ * and as many generated avatars as asked for : the latency of a query, from the JPQL to the objects.
+ * mvn -Pbenchmark clean compile exec:exec -Djmh.args="RepositoryQueryBenchmark -prof gc"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RepositoryQueryBenchmark {
+
+    /** Avatars of each type */
+    @Param({"1000", "30000"})
+    public int avatars;
+
+    private ConfigurableApplicationContext context;
+    private AvatarRepository avatarRepository;
+    private MapRepository mapRepository;
+    private int nextId;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(YulCodeApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN",
+                        "spring.datasource.url=jdbc:h2:mem:benchmark", "spring.h2.console.enabled=false")
+                .run();
+        // Three types : 3 rows for each avatar asked for, the benchmarks look for type 1
+        context.getBean(JdbcTemplate.class).update("INSERT INTO avatar (name, type, image, waiting, main, x, y) "
+                + "SELECT CONCAT('avatar', X), MOD(X, 3), '../assets/images/avatar.png', 0, 0, MOD(X, 30), MOD(X / 30, 30) "
+                + "FROM SYSTEM_RANGE(1, ?)", 3 * avatars);
+        avatarRepository = context.getBean(AvatarRepository.class);
+        mapRepository = context.getBean(MapRepository.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AvatarDto findByIdAvatar() {
+        // A different id each time, as the requests do
+        nextId = nextId % (3 * avatars) + 1;
+        return avatarRepository.findByIdAvatar(nextId);
+    }
+
+    @Benchmark
+    public List<?> findByType() {
+        return avatarRepository.findByType(1);
+    }
+
+    @Benchmark
+    public Map findByIdMap() {
+        return mapRepository.findByIdMap(1L);
+    }
+}
@@ -1,32 +1,29 @@
 package ca.onepoint.yul;
 
-import org.springframework.beans.factory.annotation.Autowired;
+import ca.onepoint.yul.grid.MapGridMigration;
+import ca.onepoint.yul.simulation.SimulationEngine;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
+
 @Component
 public class ApplicationStartup implements ApplicationListener<ApplicationReadyEvent> {
 
-    @Autowired
-    private SimpMessageSendingOperations messagingTemplate;
-    public static int secondes = 0;
+    @Resource
+    private MapGridMigration mapGridMigration;
+
+    @Resource
+    private SimulationEngine simulationEngine;
 
     @Override
     public void onApplicationEvent(ApplicationReadyEvent applicationReadyEvent) {
         try {
-            int secondes = 0;
-            while (true) {
-                Thread.sleep(1000);
-                secondes++;
-                if (secondes == 86400) {
-                    secondes = 0;
-                }
-                messagingTemplate.convertAndSend("/topic/progress", secondes);
-            }
+            mapGridMigration.migrate();
         } catch (Exception e) {
             e.printStackTrace();
         }
+        simulationEngine.start();
     }
 }
@@ -0,0 +1,19 @@
+package ca.onepoint.yul.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ForkJoinPool;
+
+@Configuration
+public class PathFindingConfig {
+
+    /**
+     * Pool solving the path-finding batches, bounded so that a big batch can't starve the web server.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ForkJoinPool pathFindingPool(@Value("${yul.path-finding.parallelism:0}") int parallelism) {
+        return new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+}
@@ -29,6 +29,8 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
             "/swagger-ui.html",
             "/webjars/**",
             "/stomp",
+            "/actuator/health",
+            "/actuator/prometheus",
             "h2-console/login.do",
             "h2-console/**",
             "/v3/api-docs/**", "/swagger-ui.html", "/swagger-ui/**", "/api-docs/swagger-config",
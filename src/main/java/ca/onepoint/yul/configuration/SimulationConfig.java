@@ -0,0 +1,35 @@
+package ca.onepoint.yul.configuration;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+@Configuration
+public class SimulationConfig {
+
+    /**
+     * Single thread running the ticks of the simulation, one after the other.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ScheduledExecutorService simulationScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "simulation-tick");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Single thread saving the avatar positions to the database, away from the ticks.
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ScheduledExecutorService positionWriterScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "position-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -1,19 +1,42 @@
 package ca.onepoint.yul.configuration;
 
+import ca.onepoint.yul.metrics.StompTrafficMetrics;
+import ca.onepoint.yul.simulation.ProgressBinaryConverter;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.messaging.converter.MessageConverter;
+import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
 
+import javax.annotation.Resource;
+import java.util.List;
+
 @Configuration
 @EnableWebSocketMessageBroker
 public class WebSocketBrokerConfig implements WebSocketMessageBrokerConfigurer {
 
+    @Resource
+    private StompTrafficMetrics stompTrafficMetrics;
+
     @Override
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.setApplicationDestinationPrefixes("/app");
         registry.enableSimpleBroker("/topic");
+        registry.configureBrokerChannel().interceptors(stompTrafficMetrics.brokerInterceptor());
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.interceptors(stompTrafficMetrics.outboundInterceptor());
+    }
+
+    @Override
+    public boolean configureMessageConverters(List<MessageConverter> messageConverters) {
+        messageConverters.add(new ProgressBinaryConverter());
+        // Keep the default converters, JSON included
+        return true;
     }
 
     @Override
@@ -1,28 +1,48 @@
 package ca.onepoint.yul.controller;
 
 import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.dto.AvatarPageDto;
+import ca.onepoint.yul.dto.AvatarSnapshotDto;
+import ca.onepoint.yul.exception.InvalidQueryException;
 import ca.onepoint.yul.service.IAvatarService;
+import ca.onepoint.yul.simulation.AvatarBroadcastState;
+import ca.onepoint.yul.simulation.SimulationEngine;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/api/avatar")
 public class AvatarController {
 
+    private static final String NDJSON = "application/x-ndjson";
+
     @Resource
     private IAvatarService iAvatarService;
 
-    @Autowired
-    private SimpMessageSendingOperations messagingTemplate;
+    @Resource
+    private SimulationEngine simulationEngine;
+
+    @Resource
+    private AvatarBroadcastState avatarBroadcastState;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Value("${yul.avatar.stream.timeout-ms:60000}")
+    private long streamTimeoutMs;
 
 
     @Operation(summary = "Get an avatar by its id")
@@ -46,18 +66,126 @@ public class AvatarController {
         return iAvatarService.getAllAvatars();
     }
 
+    @Operation(summary = "Get a page of avatars in id order, from the one after the id given")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the page",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = AvatarPageDto.class))}),
+            @ApiResponse(responseCode = "400", description = "Limit out of range supplied",
+                    content = @Content)})
+    @CrossOrigin
+    @GetMapping(value = "/", params = "limit")
+    public AvatarPageDto findAvatarsPage(@RequestParam(defaultValue = "0") Integer after, @RequestParam Integer limit) throws Exception {
+        return iAvatarService.getAvatarsPage(null, after, limit);
+    }
+
+    @Operation(summary = "Stream all the avatars in id order, one JSON object per line")
+    @CrossOrigin
+    @GetMapping(value = "/", produces = NDJSON)
+    public StreamingResponseBody streamAllAvatars() {
+        return streamAvatars(null);
+    }
+
     @CrossOrigin
     @GetMapping("/type/{type}")
     public List<AvatarDto> findAvatarsByType(@PathVariable Integer type) {
         return iAvatarService.getAvatarsByType(type);
     }
 
+    @Operation(summary = "Get a page of avatars of a type in id order, from the one after the id given")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the page",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = AvatarPageDto.class))}),
+            @ApiResponse(responseCode = "400", description = "Limit out of range supplied",
+                    content = @Content)})
+    @CrossOrigin
+    @GetMapping(value = "/type/{type}", params = "limit")
+    public AvatarPageDto findAvatarsPageByType(@PathVariable Integer type, @RequestParam(defaultValue = "0") Integer after,
+                                               @RequestParam Integer limit) throws Exception {
+        return iAvatarService.getAvatarsPage(type, after, limit);
+    }
+
+    @Operation(summary = "Stream the avatars of a type in id order, one JSON object per line")
+    @CrossOrigin
+    @GetMapping(value = "/type/{type}", produces = NDJSON)
+    public StreamingResponseBody streamAvatarsByType(@PathVariable Integer type) {
+        return streamAvatars(type);
+    }
+
+    @Operation(summary = "Get the avatars at most radius squares away from a position, the nearest first, optionally of some types only")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the avatars"),
+            @ApiResponse(responseCode = "400", description = "Negative radius supplied",
+                    content = @Content)})
+    @CrossOrigin
+    @GetMapping("/within/{x}/{y}/{radius}")
+    public List<AvatarDto> findAvatarsWithin(@PathVariable Integer x, @PathVariable Integer y, @PathVariable Integer radius,
+                                             @RequestParam(required = false) List<Integer> type) throws Exception {
+        return iAvatarService.getAvatarsWithin(x, y, radius, type);
+    }
+
+    @Operation(summary = "Get the k avatars nearest to a position, the nearest first, optionally of some types only")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the avatars"),
+            @ApiResponse(responseCode = "400", description = "k lower than 1 supplied",
+                    content = @Content)})
+    @CrossOrigin
+    @GetMapping("/nearest/{x}/{y}/{k}")
+    public List<AvatarDto> findNearestAvatars(@PathVariable Integer x, @PathVariable Integer y, @PathVariable Integer k,
+                                              @RequestParam(required = false) List<Integer> type) throws Exception {
+        return iAvatarService.getNearestAvatars(x, y, k, type);
+    }
+
+    @Operation(summary = "Get all the avatars as last broadcast, to apply the deltas of /topic/progress from")
+    @CrossOrigin
+    @GetMapping("/snapshot")
+    public AvatarSnapshotDto getSnapshot() {
+        return avatarBroadcastState.snapshot();
+    }
+
+    @Operation(summary = "Get the avatars of a region as last broadcast, to apply the deltas of /topic/region/{cx}/{cy} from")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Found the avatars of the region",
+                    content = {@Content(mediaType = "application/json",
+                            schema = @Schema(implementation = AvatarSnapshotDto.class))}),
+            @ApiResponse(responseCode = "400", description = "Negative region supplied",
+                    content = @Content)})
+    @CrossOrigin
+    @GetMapping("/region/{cx}/{cy}/snapshot")
+    public AvatarSnapshotDto getRegionSnapshot(@PathVariable Integer cx, @PathVariable Integer cy) throws InvalidQueryException {
+        return avatarBroadcastState.regionSnapshot(cx, cy);
+    }
+
     @CrossOrigin
     @PostMapping("/move-avatars")
     public void moveAvatars(@RequestBody List<AvatarDto> listAvatar) {
-        System.out.println(listAvatar);
-        messagingTemplate.convertAndSend("/topic/progress", listAvatar);
+        // Applied and broadcast by the next tick of the simulation
+        simulationEngine.submitMoves(listAvatar);
     }
 
-
+    /**
+     * The avatars are written as they are read, the response is never held in memory. A client too slow to
+     * read them all within the timeout gets a truncated response, rather than keeping a thread busy.
+     */
+    private StreamingResponseBody streamAvatars(Integer type) {
+        return out -> {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(streamTimeoutMs);
+            try {
+                iAvatarService.forEachAvatar(type, avatar -> {
+                    try {
+                        if (System.nanoTime() - deadline > 0) {
+                            throw new IOException("Avatar stream not read within " + streamTimeoutMs + " ms");
+                        }
+                        out.write(objectMapper.writeValueAsBytes(avatar));
+                        out.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+    }
 }
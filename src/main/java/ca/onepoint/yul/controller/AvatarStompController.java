@@ -0,0 +1,34 @@
+package ca.onepoint.yul.controller;
+
+import ca.onepoint.yul.dto.AvatarSnapshotDto;
+import ca.onepoint.yul.exception.InvalidQueryException;
+import ca.onepoint.yul.simulation.AvatarBroadcastState;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.simp.annotation.SubscribeMapping;
+import org.springframework.stereotype.Controller;
+
+import javax.annotation.Resource;
+
+@Controller
+public class AvatarStompController {
+
+    @Resource
+    private AvatarBroadcastState avatarBroadcastState;
+
+    /**
+     * Snapshot sent once to a client subscribing to /app/avatars/snapshot, before it follows the deltas.
+     */
+    @SubscribeMapping("/avatars/snapshot")
+    public AvatarSnapshotDto getSnapshot() {
+        return avatarBroadcastState.snapshot();
+    }
+
+    /**
+     * Snapshot of a region sent once to a client subscribing to /app/region/{cx}/{cy}/snapshot,
+     * before it follows the deltas of /topic/region/{cx}/{cy}.
+     */
+    @SubscribeMapping("/region/{cx}/{cy}/snapshot")
+    public AvatarSnapshotDto getRegionSnapshot(@DestinationVariable int cx, @DestinationVariable int cy) throws InvalidQueryException {
+        return avatarBroadcastState.regionSnapshot(cx, cy);
+    }
+}
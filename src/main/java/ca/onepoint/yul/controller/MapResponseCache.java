@@ -0,0 +1,153 @@
+package ca.onepoint.yul.controller;
+
+import ca.onepoint.yul.grid.MapGridCache;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.WebRequest;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Map responses serialized once per map version, and compressed once per encoding asked for.
+ * A request whose If-None-Match or If-Modified-Since matches gets a 304 straight from here, a request
+ * for a known response gets its bytes : the service layer is only called for a new map version.
+ * The responses are dropped whenever {@link MapGridCache} evicts a map, but keep as Last-Modified the last
+ * change of the map(s) they are built from.
+ */
+@Component
+public class MapResponseCache {
+
+    @Resource
+    private MapGridCache mapGridCache;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Counter misses;
+    private Counter hits;
+    private Counter notModified;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    private void registerMetrics() {
+        misses = requestCounter("miss");
+        hits = requestCounter("hit");
+        notModified = requestCounter("not-modified");
+    }
+
+    /**
+     * @param key   the representation and the map(s) it is built from, the same key for the same body
+     * @param mapId the map the body is built from, all of them when null : its Last-Modified is the one of the response
+     * @param body  builds the body when there is no valid response for the key
+     */
+    public ResponseEntity<byte[]> respond(String key, Long mapId, MediaType contentType, Body body, WebRequest request) throws JsonProcessingException {
+        Entry entry = entries.get(key);
+        if (entry == null || entry.generation != mapGridCache.getGeneration()) {
+            misses.increment();
+            // Read before building : an eviction in between leaves the entry stale
+            long generation = mapGridCache.getGeneration();
+            long lastModified = mapGridCache.getLastModified(mapId);
+            entry = new Entry(generation, lastModified, objectMapper.writeValueAsBytes(body.get()));
+            entries.put(key, entry);
+        } else {
+            hits.increment();
+        }
+
+        // The same URL gives the squares or the palette depending on Accept, and is compressed depending on Accept-Encoding
+        String encoding = encoding(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        // Strong validator : one per body and per encoding
+        String eTag = "\"" + entry.digest + (encoding.equals("identity") ? "" : "-" + encoding) + "\"";
+        if (request.checkNotModified(eTag, entry.lastModified)) {
+            notModified.increment();
+            return ResponseEntity.status(304).eTag(eTag).lastModified(entry.lastModified)
+                    .cacheControl(CacheControl.noCache()).varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).build();
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(contentType).eTag(eTag).lastModified(entry.lastModified)
+                .cacheControl(CacheControl.noCache()).varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (!encoding.equals("identity")) {
+            response.header(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        return response.body(entry.encoded(encoding));
+    }
+
+    /**
+     * gzip when accepted, deflate otherwise when accepted, no compression otherwise.
+     */
+    private static String encoding(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return "identity";
+        }
+        boolean deflate = false;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim().toLowerCase();
+            if (parts.length > 1 && parts[1].trim().matches("q\\s*=\\s*0(\\.0*)?")) {
+                continue;
+            }
+            if (name.equals("gzip")) {
+                return "gzip";
+            }
+            deflate |= name.equals("deflate");
+        }
+        return deflate ? "deflate" : "identity";
+    }
+
+    private Counter requestCounter(String result) {
+        return Counter.builder("yul.map.response.requests").tag("result", result).register(meterRegistry);
+    }
+
+    public interface Body {
+        Object get() throws JsonProcessingException;
+    }
+
+    private static final class Entry {
+        private final long generation;
+        private final long lastModified;
+        private final String digest;
+        private final byte[] json;
+        private final ConcurrentHashMap<String, byte[]> encodings = new ConcurrentHashMap<>();
+
+        private Entry(long generation, long lastModified, byte[] json) {
+            this.generation = generation;
+            // HTTP dates have a second resolution
+            this.lastModified = lastModified / 1000 * 1000;
+            this.digest = DigestUtils.md5DigestAsHex(json);
+            this.json = json;
+        }
+
+        private byte[] encoded(String encoding) {
+            if (encoding.equals("identity")) {
+                return json;
+            }
+            return encodings.computeIfAbsent(encoding, name -> {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 8);
+                try (OutputStream out = name.equals("gzip") ? new GZIPOutputStream(bytes) : new DeflaterOutputStream(bytes)) {
+                    out.write(json);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return bytes.toByteArray();
+            });
+        }
+    }
+}
@@ -1,6 +1,6 @@
 package ca.onepoint.yul.controller;
 
-import ca.onepoint.yul.ApplicationStartup;
+import ca.onepoint.yul.simulation.SimulationEngine;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
@@ -11,10 +11,14 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import javax.annotation.Resource;
+
 @RestController
 @RequestMapping("/api/timer")
 public class TimerController {
 
+    @Resource
+    private SimulationEngine simulationEngine;
 
     @Operation(summary = "Get the time in seconds")
     @ApiResponses(value = {
@@ -28,7 +32,7 @@ public class TimerController {
     @CrossOrigin
     @GetMapping("/")
     public Integer getTheTime() {
-        return ApplicationStartup.secondes;
+        return simulationEngine.getSecondes();
     }
 
 
@@ -0,0 +1,15 @@
+package ca.onepoint.yul.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Avatars whose position or waiting state changed since the previous delta.
+ * The sequence is incremented by one for each delta : a client missing one resynchronises with a snapshot.
+ */
+@Data
+public class AvatarDeltaDto {
+    private long sequence;
+    private List<AvatarMoveDto> avatars;
+}
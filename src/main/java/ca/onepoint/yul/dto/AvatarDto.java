@@ -1,8 +1,12 @@
 package ca.onepoint.yul.dto;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class AvatarDto {
     private Integer id;
     private String name;
@@ -0,0 +1,14 @@
+package ca.onepoint.yul.dto;
+
+import lombok.Data;
+
+/**
+ * Position and waiting state of an avatar, as sent in the deltas.
+ */
+@Data
+public class AvatarMoveDto {
+    private int id;
+    private Integer x;
+    private Integer y;
+    private Integer waiting;
+}
@@ -0,0 +1,14 @@
+package ca.onepoint.yul.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Page of avatars in id order. The next page is asked for with after = next, there is none when next is null.
+ */
+@Data
+public class AvatarPageDto {
+    private List<AvatarDto> avatars;
+    private Integer next;
+}
@@ -0,0 +1,14 @@
+package ca.onepoint.yul.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * All the avatars as last broadcast, up to the delta of the same sequence.
+ */
+@Data
+public class AvatarSnapshotDto {
+    private long sequence;
+    private List<AvatarDto> avatars;
+}
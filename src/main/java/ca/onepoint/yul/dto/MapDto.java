@@ -9,6 +9,8 @@ public class MapDto {
 
     private Integer id;
     private String name;
+    private Integer width;
+    private Integer height;
     private SquareDto[][] square;
 
     public SquareDto[][] getSquares() {
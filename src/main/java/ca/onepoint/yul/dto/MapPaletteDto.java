@@ -0,0 +1,20 @@
+package ca.onepoint.yul.dto;
+
+import lombok.Data;
+
+/**
+ * Map with its squares as flat arrays, row by row (index = y * width + x) : the value of each square,
+ * and the index of its image in the palette of the distinct images of the map.
+ */
+@Data
+public class MapPaletteDto {
+
+    private Integer id;
+    private String name;
+    private Integer width;
+    private Integer height;
+    private String[] palette;
+    private int[] values;
+    private int[] images;
+
+}
@@ -0,0 +1,16 @@
+package ca.onepoint.yul.dto;
+
+import ca.onepoint.yul.pathfinding.PathAlgorithm;
+import lombok.Data;
+
+@Data
+public class PathQueryDto {
+    // The first map when null
+    private Long mapId;
+    private int objectType;
+    private int fromX;
+    private int fromY;
+    private int toX;
+    private int toY;
+    private PathAlgorithm algorithm;
+}
@@ -0,0 +1,11 @@
+package ca.onepoint.yul.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class PathResultDto {
+    private List<PositionDto> path;
+    private String error;
+}
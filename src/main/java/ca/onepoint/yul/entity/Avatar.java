@@ -1,11 +1,13 @@
 package ca.onepoint.yul.entity;
 
+import ca.onepoint.yul.occupancy.AvatarOccupancyListener;
 import lombok.Data;
 
 import javax.persistence.*;
 
 @Entity
 @Table(name = "avatar")
+@EntityListeners(AvatarOccupancyListener.class)
 @Data
 public class Avatar {
 
@@ -26,5 +28,8 @@ public class Avatar {
     private Integer x;
     @Column
     private Integer y;
+    // The map the avatar walks on, the first one unless set
+    @Column(name = "map_id")
+    private Integer mapId = 1;
 
 }
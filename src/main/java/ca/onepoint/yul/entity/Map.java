@@ -1,11 +1,13 @@
 package ca.onepoint.yul.entity;
 
+import ca.onepoint.yul.grid.MapGridInvalidationListener;
 import lombok.Data;
 
 import javax.persistence.*;
 
 @Entity
 @Table(name = "map")
+@EntityListeners(MapGridInvalidationListener.class)
 @Data
 public class Map {
 
@@ -16,5 +18,11 @@ public class Map {
     private String name;
     @Column
     private String map;
+    @Lob
+    @Column
+    private byte[] grid;
+    @Version
+    @Column
+    private Integer version;
 
 }
@@ -0,0 +1,31 @@
+package ca.onepoint.yul.entity;
+
+import ca.onepoint.yul.pathfinding.TransitLinkInvalidationListener;
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * Move of one square from a square of a map to another one, far away : the subway.
+ */
+@Entity
+@Table(name = "transit_link")
+@EntityListeners(TransitLinkInvalidationListener.class)
+@Data
+public class TransitLink {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Integer id;
+    @Column(name = "map_id")
+    private Integer mapId;
+    @Column(name = "from_x")
+    private Integer fromX;
+    @Column(name = "from_y")
+    private Integer fromY;
+    @Column(name = "to_x")
+    private Integer toX;
+    @Column(name = "to_y")
+    private Integer toY;
+
+}
@@ -0,0 +1,11 @@
+package ca.onepoint.yul.exception;
+
+/**
+ * A request the client has to fix, answered with a 400.
+ */
+public class InvalidQueryException extends Exception {
+
+    public InvalidQueryException(String message) {
+        super(message);
+    }
+}
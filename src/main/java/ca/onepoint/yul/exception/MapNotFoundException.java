@@ -0,0 +1,11 @@
+package ca.onepoint.yul.exception;
+
+/**
+ * A map id that matches no map, answered with a 404.
+ */
+public class MapNotFoundException extends Exception {
+
+    public MapNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,80 @@
+package ca.onepoint.yul.grid;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the content of a JSON string literal, unescaping it on the fly.
+ * Lets the parser go through a document stored as a JSON string without copying it first.
+ */
+final class JsonStringContentReader extends Reader {
+
+    private final String text;
+    private final int end;
+    private int position;
+
+    /**
+     * @param text a JSON string literal, quotes included
+     */
+    JsonStringContentReader(String text) {
+        this.text = text;
+        this.position = text.indexOf('"') + 1;
+        this.end = text.lastIndexOf('"');
+        if (position == 0 || end < position) {
+            throw new IllegalArgumentException("Not a JSON string");
+        }
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int length) throws IOException {
+        if (position >= end) {
+            return -1;
+        }
+        int count = 0;
+        while (count < length && position < end) {
+            char c = text.charAt(position++);
+            if (c == '\\') {
+                c = unescape();
+            }
+            buffer[offset + count++] = c;
+        }
+        return count;
+    }
+
+    private char unescape() throws IOException {
+        if (position >= end) {
+            throw new IOException("Unterminated escape sequence");
+        }
+        char c = text.charAt(position++);
+        switch (c) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u':
+                if (position + 4 > end) {
+                    throw new IOException("Invalid unicode escape");
+                }
+                try {
+                    c = (char) Integer.parseInt(text, position, position + 4, 16);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Invalid unicode escape", e);
+                }
+                position += 4;
+                return c;
+            default:
+                // \" \\ and \/
+                return c;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,52 @@
+package ca.onepoint.yul.grid;
+
+import lombok.Getter;
+
+/**
+ * Compiled, read-only view of a map row.
+ * Tiles are stored row by row (index = y * width + x) : one byte for the value
+ * and one palette index for the image.
+ * The arrays are shared between threads, they must never be modified.
+ */
+@Getter
+public final class MapGrid {
+
+    private final Long id;
+    private final String name;
+    private final int version;
+    private final int width;
+    private final int height;
+    private final byte[] values;
+    private final short[] images;
+    private final String[] palette;
+
+    public MapGrid(Long id, String name, int version, int width, int height, byte[] values, short[] images, String[] palette) {
+        if (values.length != Math.multiplyExact(width, height) || images.length != values.length) {
+            throw new IllegalArgumentException("Map " + id + " squares don't match its " + width + "x" + height + " size");
+        }
+        this.id = id;
+        this.name = name;
+        this.version = version;
+        this.width = width;
+        this.height = height;
+        this.values = values;
+        this.images = images;
+        this.palette = palette;
+    }
+
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    public boolean contains(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height;
+    }
+
+    public int getValue(int x, int y) {
+        return values[index(x, y)];
+    }
+
+    public String getImage(int x, int y) {
+        return palette[images[index(x, y)]];
+    }
+}
@@ -0,0 +1,186 @@
+package ca.onepoint.yul.grid;
+
+import ca.onepoint.yul.entity.Map;
+import ca.onepoint.yul.repository.MapRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one compiled {@link MapGrid} per map id, so the map column is parsed
+ * once per map version instead of once per request.
+ * Entries are evicted by {@link MapGridInvalidationListener} when a map row changes.
+ */
+@Component
+public class MapGridCache {
+
+    @Resource
+    private MapRepository mapRepository;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Counter hits;
+    private Counter misses;
+    private Timer parseTimer;
+
+    private final ConcurrentHashMap<Long, MapGrid> grids = new ConcurrentHashMap<>();
+
+    // Ids of all the maps, in database order, null until findAllMap has been run
+    private volatile List<Long> allIds;
+
+    // Id of the first map, null until asked for
+    private volatile Long firstId;
+
+    // Bumped on every eviction so that a load racing with an update is not published
+    private final AtomicLong generation = new AtomicLong();
+
+    // Time of the last eviction of each map, and of the last eviction of all of them : the start before any
+    private final ConcurrentHashMap<Long, Long> modifiedTimes = new ConcurrentHashMap<>();
+    private volatile long allModifiedTime = System.currentTimeMillis();
+
+    @PostConstruct
+    private void registerMetrics() {
+        hits = Counter.builder("yul.map.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("yul.map.cache.requests").tag("result", "miss").register(meterRegistry);
+        parseTimer = Timer.builder("yul.map.parse")
+                .description("Parse time of the grid or JSON column of a map")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("yul.map.cache.size", grids, ConcurrentHashMap::size).register(meterRegistry);
+    }
+
+    public MapGrid get(Long id) throws JsonProcessingException {
+        MapGrid grid = grids.get(id);
+        if (grid != null) {
+            hits.increment();
+            return grid;
+        }
+        misses.increment();
+        long loadGeneration = generation.get();
+        MapGrid loaded = parse(mapRepository.findByIdMap(id));
+        // Checked under the lock of the entry : an eviction in between can't let an older grid in
+        MapGrid published = grids.compute(id, (key, current) -> current != null || generation.get() != loadGeneration ? current : loaded);
+        return published != null ? published : loaded;
+    }
+
+    public List<MapGrid> getAll() throws JsonProcessingException {
+        List<Long> ids = allIds;
+        if (ids != null) {
+            List<MapGrid> result = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                result.add(get(id));
+            }
+            return result;
+        }
+
+        long loadGeneration = generation.get();
+        List<MapGrid> result = new ArrayList<>();
+        List<Long> loadedIds = new ArrayList<>();
+        for (Map map : mapRepository.findAllMap()) {
+            Long id = Long.valueOf(map.getId());
+            MapGrid grid = grids.get(id);
+            if (grid == null || grid.getVersion() != MapGridParser.version(map)) {
+                misses.increment();
+                grid = parse(map);
+            } else {
+                hits.increment();
+            }
+            result.add(grid);
+            loadedIds.add(id);
+        }
+        for (MapGrid grid : result) {
+            grids.compute(grid.getId(), (key, current) -> generation.get() != loadGeneration ? current : grid);
+        }
+        if (generation.get() == loadGeneration) {
+            allIds = Collections.unmodifiableList(loadedIds);
+            // An eviction may have cleared the ids just before they were set
+            if (generation.get() != loadGeneration) {
+                allIds = null;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the id of the first map, without loading any, null when there is no map
+     */
+    public Long getFirstId() {
+        Long id = firstId;
+        if (id != null) {
+            return id;
+        }
+        List<Long> ids = allIds;
+        if (ids != null) {
+            return ids.isEmpty() ? null : ids.get(0);
+        }
+        long loadGeneration = generation.get();
+        id = mapRepository.findFirstMapId();
+        if (generation.get() == loadGeneration) {
+            firstId = id;
+            // An eviction may have cleared the id just before it was set
+            if (generation.get() != loadGeneration) {
+                firstId = null;
+            }
+        }
+        return id;
+    }
+
+    private MapGrid parse(Map map) throws JsonProcessingException {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return MapGridParser.parse(map);
+        } finally {
+            sample.stop(parseTimer);
+        }
+    }
+
+    /**
+     * @return a number changing on every eviction, for the caches built on top of this one
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * @param id the map, all of them when null
+     * @return the time in milliseconds of the last change seen to the map, or to any map when id is null
+     */
+    public long getLastModified(Long id) {
+        long modified = allModifiedTime;
+        if (id == null) {
+            for (long time : modifiedTimes.values()) {
+                modified = Math.max(modified, time);
+            }
+            return modified;
+        }
+        return Math.max(modified, modifiedTimes.getOrDefault(id, 0L));
+    }
+
+    public void evict(Long id) {
+        modifiedTimes.merge(id, System.currentTimeMillis(), Math::max);
+        generation.incrementAndGet();
+        allIds = null;
+        firstId = null;
+        grids.remove(id);
+    }
+
+    public void evictAll() {
+        allModifiedTime = Math.max(allModifiedTime, System.currentTimeMillis());
+        generation.incrementAndGet();
+        allIds = null;
+        firstId = null;
+        grids.clear();
+    }
+}
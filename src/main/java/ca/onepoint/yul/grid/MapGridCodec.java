@@ -0,0 +1,141 @@
+package ca.onepoint.yul.grid;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Binary format of the grid column of a map row, a few bytes per run of identical squares
+ * instead of about 60 characters per square in JSON :
+ * <pre>
+ * byte    format (1)
+ * varint  width, height
+ * varint  palette size, then for each image : varint length, UTF-8 bytes
+ * runs    until width * height squares : varint tile (image index &lt;&lt; 7 | value), varint length
+ * </pre>
+ * Varints are unsigned, 7 bits per byte, low bits first.
+ */
+public final class MapGridCodec {
+
+    private static final int FORMAT = 1;
+
+    private MapGridCodec() {
+    }
+
+    public static byte[] encode(MapGrid grid) {
+        byte[] values = grid.getValues();
+        short[] images = grid.getImages();
+        String[] palette = grid.getPalette();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(64 + palette.length * 40 + values.length / 4);
+        out.write(FORMAT);
+        writeVarint(out, grid.getWidth());
+        writeVarint(out, grid.getHeight());
+        writeVarint(out, palette.length);
+        for (String image : palette) {
+            byte[] bytes = image.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+        int cell = 0;
+        while (cell < values.length) {
+            int start = cell;
+            while (cell < values.length && values[cell] == values[start] && images[cell] == images[start]) {
+                cell++;
+            }
+            writeVarint(out, images[start] << 7 | values[start]);
+            writeVarint(out, cell - start);
+        }
+        return out.toByteArray();
+    }
+
+    public static MapGrid decode(Long id, String name, int version, byte[] data) {
+        Reader in = new Reader(id, data);
+        if (in.readByte() != FORMAT) {
+            throw new IllegalArgumentException("Unknown format of map " + id);
+        }
+        int width = in.readVarint();
+        int height = in.readVarint();
+        String[] palette = new String[in.readVarint()];
+        if (palette.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many distinct images in map " + id);
+        }
+        for (int i = 0; i < palette.length; i++) {
+            palette[i] = in.readString();
+        }
+        int cells;
+        try {
+            cells = Math.multiplyExact(width, height);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Invalid size of map " + id + " : " + width + "x" + height);
+        }
+        byte[] values = new byte[cells];
+        short[] images = new short[cells];
+        int cell = 0;
+        while (cell < cells) {
+            int tile = in.readVarint();
+            int length = in.readVarint();
+            int image = tile >>> 7;
+            if (image >= palette.length || length < 1 || length > cells - cell) {
+                throw new IllegalArgumentException("Invalid squares in map " + id + " at square " + cell);
+            }
+            Arrays.fill(values, cell, cell + length, (byte) (tile & 0x7F));
+            Arrays.fill(images, cell, cell + length, (short) image);
+            cell += length;
+        }
+        if (in.position != data.length) {
+            throw new IllegalArgumentException("Trailing bytes in map " + id);
+        }
+        return new MapGrid(id, name, version, width, height, values, images, palette);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    private static final class Reader {
+        private final Long id;
+        private final byte[] data;
+        private int position;
+
+        private Reader(Long id, byte[] data) {
+            this.id = id;
+            this.data = data;
+        }
+
+        private int readByte() {
+            if (position == data.length) {
+                throw new IllegalArgumentException("Truncated map " + id);
+            }
+            return data[position++] & 0xFF;
+        }
+
+        private int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = readByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Invalid number in map " + id + " at byte " + position);
+        }
+
+        private String readString() {
+            int length = readVarint();
+            if (length > data.length - position) {
+                throw new IllegalArgumentException("Truncated map " + id);
+            }
+            String value = new String(data, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
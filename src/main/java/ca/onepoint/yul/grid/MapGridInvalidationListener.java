@@ -0,0 +1,39 @@
+package ca.onepoint.yul.grid;
+
+import ca.onepoint.yul.entity.Map;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA listener evicting the compiled grid of a map when its row is written.
+ * The eviction waits for the commit, otherwise a concurrent reader could cache the old row again.
+ */
+public class MapGridInvalidationListener {
+
+    // Lazy lookup : the listener is created with the EntityManagerFactory, before the repositories
+    @Autowired
+    private ObjectProvider<MapGridCache> mapGridCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onMapChanged(Map map) {
+        Long id = Long.valueOf(map.getId());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    mapGridCache.getObject().evict(id);
+                }
+            });
+        } else {
+            mapGridCache.getObject().evict(id);
+        }
+    }
+}
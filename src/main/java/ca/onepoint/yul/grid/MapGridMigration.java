@@ -0,0 +1,66 @@
+package ca.onepoint.yul.grid;
+
+import ca.onepoint.yul.entity.Map;
+import ca.onepoint.yul.repository.MapRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.Arrays;
+
+/**
+ * Moves the maps still stored as JSON, as data.sql inserts them, to the binary grid column.
+ * Each map is decoded back and compared to its JSON before its row is written : a map that
+ * can't be read or does not come back the same stays in JSON, the others are migrated all the same.
+ */
+@Component
+public class MapGridMigration {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MapGridMigration.class);
+
+    @Resource
+    private MapRepository mapRepository;
+
+    @Resource
+    private MapGridCache mapGridCache;
+
+    /**
+     * @return the number of maps migrated
+     */
+    public int migrate() {
+        int migrated = 0;
+        for (Map map : mapRepository.findAllMap()) {
+            if (map.getGrid() != null) {
+                continue;
+            }
+            MapGrid grid;
+            byte[] encoded;
+            try {
+                grid = MapGridParser.parse(map);
+                encoded = MapGridCodec.encode(grid);
+                if (!sameSquares(grid, MapGridCodec.decode(grid.getId(), grid.getName(), grid.getVersion(), encoded))) {
+                    LOGGER.warn("Map {} is not the same once encoded, left in JSON", map.getId());
+                    continue;
+                }
+            } catch (Exception e) {
+                LOGGER.warn("Map {} could not be encoded, left in JSON", map.getId(), e);
+                continue;
+            }
+            // A map updated in between is left for the next start
+            if (mapRepository.updateGrid(map.getId(), MapGridParser.version(map), encoded) == 1) {
+                mapGridCache.evict(grid.getId());
+                migrated++;
+            }
+        }
+        return migrated;
+    }
+
+    private static boolean sameSquares(MapGrid expected, MapGrid actual) {
+        return expected.getWidth() == actual.getWidth()
+                && expected.getHeight() == actual.getHeight()
+                && Arrays.equals(expected.getValues(), actual.getValues())
+                && Arrays.equals(expected.getImages(), actual.getImages())
+                && Arrays.equals(expected.getPalette(), actual.getPalette());
+    }
+}
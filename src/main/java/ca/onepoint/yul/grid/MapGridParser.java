@@ -0,0 +1,219 @@
+package ca.onepoint.yul.grid;
+
+import ca.onepoint.yul.entity.Map;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Turns the column of a map row into a {@link MapGrid} : the binary grid column when the map has been
+ * migrated to it (see {@link MapGridCodec}), the JSON column otherwise.
+ * The JSON column is read in a single pass with the Jackson streaming API, straight into the
+ * grid arrays : no intermediate string, no JSON tree and no boxed value per square.
+ */
+public final class MapGridParser {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private MapGridParser() {
+    }
+
+    public static MapGrid parse(Map map) throws JsonProcessingException {
+        if (map.getGrid() != null) {
+            return MapGridCodec.decode(Long.valueOf(map.getId()), map.getName(), version(map), map.getGrid());
+        }
+        String column = map.getMap();
+        // H2 stores the text inserted in the JSON column as a JSON string : the grid is its unescaped content
+        boolean quoted = column.stripLeading().startsWith("\"");
+        try (JsonParser parser = quoted
+                ? JSON_FACTORY.createParser(new JsonStringContentReader(column))
+                : JSON_FACTORY.createParser(column)) {
+            parser.nextToken();
+            // A square takes about 60 characters, sizing from the column avoids most of the array growth
+            return readGrid(map, parser, Math.max(1024, column.length() / 48));
+        } catch (JsonProcessingException e) {
+            throw e;
+        } catch (IOException e) {
+            throw new JsonParseException(null, "Invalid map " + map.getId() + " : " + e.getMessage(), e);
+        }
+    }
+
+    static int version(Map map) {
+        return map.getVersion() == null ? 0 : map.getVersion();
+    }
+
+    private static MapGrid readGrid(Map map, JsonParser parser, int capacity) throws IOException {
+        expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+        PaletteBuilder palette = new PaletteBuilder();
+        byte[] values = new byte[capacity];
+        short[] images = new short[capacity];
+        int width = -1;
+        int height = 0;
+        int cell = 0;
+
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            expect(parser, parser.currentToken(), JsonToken.START_ARRAY);
+            int rowStart = cell;
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                expect(parser, parser.currentToken(), JsonToken.START_OBJECT);
+                if (cell == values.length) {
+                    int grown = values.length < Integer.MAX_VALUE / 2 ? values.length * 2 : Integer.MAX_VALUE - 8;
+                    values = Arrays.copyOf(values, grown);
+                    images = Arrays.copyOf(images, grown);
+                }
+                readSquare(map, parser, palette, values, images, cell++);
+            }
+            int rowWidth = cell - rowStart;
+            if (width < 0) {
+                width = rowWidth;
+            } else if (rowWidth != width) {
+                throw new JsonParseException(parser, "Row " + height + " of map " + map.getId() + " has " + rowWidth + " squares instead of " + width);
+            }
+            height++;
+        }
+        if (width < 0) {
+            width = 0;
+        }
+        return new MapGrid(Long.valueOf(map.getId()), map.getName(), version(map), width, height,
+                Arrays.copyOf(values, cell), Arrays.copyOf(images, cell), palette.toArray());
+    }
+
+    private static void readSquare(Map map, JsonParser parser, PaletteBuilder palette, byte[] values, short[] images, int cell) throws IOException {
+        boolean hasValue = false;
+        boolean hasImage = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if ("value".equals(field)) {
+                values[cell] = readValue(parser, token);
+                hasValue = true;
+            } else if ("image".equals(field)) {
+                expect(parser, token, JsonToken.VALUE_STRING);
+                images[cell] = palette.indexOf(parser.getTextCharacters(), parser.getTextOffset(), parser.getTextLength());
+                hasImage = true;
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (!hasValue || !hasImage) {
+            throw new JsonParseException(parser, "Square " + cell + " of map " + map.getId() + " needs a value and an image");
+        }
+    }
+
+    /**
+     * Square values are written as strings ("1") but numbers are accepted too.
+     */
+    private static byte readValue(JsonParser parser, JsonToken token) throws IOException {
+        int value;
+        if (token == JsonToken.VALUE_NUMBER_INT) {
+            value = parser.getIntValue();
+        } else {
+            expect(parser, token, JsonToken.VALUE_STRING);
+            char[] text = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            if (length == 0 || length > 3) {
+                throw new JsonParseException(parser, "Invalid square value");
+            }
+            value = 0;
+            for (int i = offset; i < offset + length; i++) {
+                char digit = text[i];
+                if (digit < '0' || digit > '9') {
+                    throw new JsonParseException(parser, "Invalid square value");
+                }
+                value = value * 10 + digit - '0';
+            }
+        }
+        if (value < 0 || value > Byte.MAX_VALUE) {
+            throw new JsonParseException(parser, "Square value out of range : " + value);
+        }
+        return (byte) value;
+    }
+
+    private static void expect(JsonParser parser, JsonToken actual, JsonToken expected) throws JsonParseException {
+        if (actual != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + " but found " + actual);
+        }
+    }
+
+    /**
+     * Deduplicates the image paths, a city map only uses a few dozens of them.
+     * Lookups are done on the parser buffer so that no String is created for a known image.
+     */
+    static final class PaletteBuilder {
+
+        private String[] keys = new String[64];
+        private short[] indexes = new short[64];
+        private String[] images = new String[16];
+        private int size;
+
+        short indexOf(char[] text, int offset, int length) {
+            int hash = 0;
+            for (int i = offset; i < offset + length; i++) {
+                hash = 31 * hash + text[i];
+            }
+            int mask = keys.length - 1;
+            int slot = hash & mask;
+            while (keys[slot] != null) {
+                if (matches(keys[slot], text, offset, length)) {
+                    return indexes[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (size == Short.MAX_VALUE) {
+                throw new IllegalStateException("Too many distinct images in map");
+            }
+            String image = new String(text, offset, length);
+            keys[slot] = image;
+            indexes[slot] = (short) size;
+            if (size == images.length) {
+                images = Arrays.copyOf(images, size * 2);
+            }
+            images[size] = image;
+            if (++size * 2 > keys.length) {
+                rehash();
+            }
+            return (short) (size - 1);
+        }
+
+        String[] toArray() {
+            return Arrays.copyOf(images, size);
+        }
+
+        private static boolean matches(String key, char[] text, int offset, int length) {
+            if (key.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (key.charAt(i) != text[offset + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void rehash() {
+            String[] oldKeys = keys;
+            short[] oldIndexes = indexes;
+            keys = new String[oldKeys.length * 2];
+            indexes = new short[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    // String.hashCode() is the same polynomial as the one computed on the buffer
+                    int slot = oldKeys[i].hashCode() & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    indexes[slot] = oldIndexes[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package ca.onepoint.yul.metrics;
+
+import ca.onepoint.yul.pathfinding.PathCache;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+/**
+ * Counters of the path cache, read from the cache when scraped.
+ */
+@Component
+public class PathCacheMetrics implements MeterBinder {
+
+    private final PathCache pathCache;
+
+    public PathCacheMetrics(PathCache pathCache) {
+        this.pathCache = pathCache;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("yul.path-cache.requests", pathCache, PathCache::getHits)
+                .description("Routes asked to the path cache")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("yul.path-cache.requests", pathCache, PathCache::getMisses)
+                .description("Routes asked to the path cache")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("yul.path-cache.removals", pathCache, PathCache::getEvictions)
+                .description("Routes dropped by the path cache")
+                .tag("cause", "eviction")
+                .register(registry);
+        FunctionCounter.builder("yul.path-cache.removals", pathCache, PathCache::getInvalidations)
+                .description("Routes dropped by the path cache")
+                .tag("cause", "invalidation")
+                .register(registry);
+        Gauge.builder("yul.path-cache.size", pathCache, PathCache::size)
+                .description("Routes in the path cache")
+                .register(registry);
+    }
+}
@@ -0,0 +1,118 @@
+package ca.onepoint.yul.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Traffic of the STOMP broker : messages published to the broker, and messages and bytes sent to
+ * each client. A message published on a topic is sent once per subscribed session, so the ratio of
+ * the two counters is the broadcast fan-out.
+ * The outbound queue of a session is the messages handed to the client outbound channel and not
+ * written to its socket yet : its depth is recorded on every message, its maximum is a gauge.
+ */
+@Component
+public class StompTrafficMetrics {
+
+    private final Counter published;
+    private final Counter outboundMessages;
+    private final Counter outboundBytes;
+    private final DistributionSummary queueDepth;
+    private final ConcurrentHashMap<String, AtomicInteger> queues = new ConcurrentHashMap<>();
+
+    public StompTrafficMetrics(MeterRegistry meterRegistry) {
+        published = Counter.builder("yul.stomp.published")
+                .description("Messages published to the broker")
+                .register(meterRegistry);
+        outboundMessages = Counter.builder("yul.stomp.outbound.messages")
+                .description("Messages sent to the clients")
+                .register(meterRegistry);
+        outboundBytes = Counter.builder("yul.stomp.outbound.bytes")
+                .description("Payload bytes sent to the clients")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        queueDepth = DistributionSummary.builder("yul.stomp.outbound.queue.depth")
+                .description("Messages waiting for a session when one more is queued")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("yul.stomp.outbound.queue.max", queues, StompTrafficMetrics::maxDepth)
+                .description("Deepest outbound queue among the sessions")
+                .register(meterRegistry);
+        Gauge.builder("yul.stomp.sessions.queued", queues, ConcurrentHashMap::size)
+                .description("Sessions with messages waiting")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Interceptor of the broker channel, counting the published messages.
+     */
+    public ChannelInterceptor brokerInterceptor() {
+        return new ChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                published.increment();
+                return message;
+            }
+        };
+    }
+
+    /**
+     * Interceptor of the client outbound channel, counting the messages and following the queue of each session.
+     */
+    public ExecutorChannelInterceptor outboundInterceptor() {
+        return new ExecutorChannelInterceptor() {
+            @Override
+            public Message<?> preSend(Message<?> message, MessageChannel channel) {
+                String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+                if (sessionId != null) {
+                    int depth = queues.computeIfAbsent(sessionId, id -> new AtomicInteger()).incrementAndGet();
+                    queueDepth.record(depth);
+                }
+                return message;
+            }
+
+            @Override
+            public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+                if (!sent) {
+                    dequeue(message);
+                }
+            }
+
+            @Override
+            public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler, Exception ex) {
+                outboundMessages.increment();
+                if (message.getPayload() instanceof byte[]) {
+                    outboundBytes.increment(((byte[]) message.getPayload()).length);
+                }
+                dequeue(message);
+            }
+        };
+    }
+
+    private void dequeue(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            // Drop the empty queues, sessions come and go
+            queues.computeIfPresent(sessionId, (id, depth) -> depth.decrementAndGet() <= 0 ? null : depth);
+        }
+    }
+
+    private static double maxDepth(ConcurrentHashMap<String, AtomicInteger> queues) {
+        int max = 0;
+        for (AtomicInteger depth : queues.values()) {
+            max = Math.max(max, depth.get());
+        }
+        return max;
+    }
+}
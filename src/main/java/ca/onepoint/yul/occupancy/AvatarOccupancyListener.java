@@ -0,0 +1,89 @@
+package ca.onepoint.yul.occupancy;
+
+import ca.onepoint.yul.entity.Avatar;
+import ca.onepoint.yul.simulation.AvatarBroadcastState;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA listener keeping the {@link OccupancyGrid}, the {@link AvatarSpatialIndex} and the {@link AvatarBroadcastState}
+ * in line with the saved avatars,
+ * once the transaction is committed.
+ */
+public class AvatarOccupancyListener {
+
+    // Lazy lookup : the listener is created with the EntityManagerFactory, before the repositories
+    @Autowired
+    private ObjectProvider<OccupancyGrid> occupancyGrid;
+
+    @Autowired
+    private ObjectProvider<AvatarSpatialIndex> avatarSpatialIndex;
+
+    @Autowired
+    private ObjectProvider<AvatarBroadcastState> avatarBroadcastState;
+
+    @PostPersist
+    @PostUpdate
+    public void onAvatarSaved(Avatar avatar) {
+        Integer id = avatar.getId();
+        Integer x = avatar.getX();
+        Integer y = avatar.getY();
+        Integer mapId = avatar.getMapId();
+        Avatar saved = copy(avatar);
+        afterCommit(() -> {
+            avatarSpatialIndex.getObject().save(saved);
+            avatarBroadcastState.getObject().save(saved);
+            if (x == null || y == null || mapId == null) {
+                occupancyGrid.getObject().remove(id);
+            } else {
+                occupancyGrid.getObject().move(id, mapId, x, y);
+            }
+        });
+    }
+
+    @PostRemove
+    public void onAvatarRemoved(Avatar avatar) {
+        Integer id = avatar.getId();
+        afterCommit(() -> {
+            occupancyGrid.getObject().remove(id);
+            avatarSpatialIndex.getObject().remove(id);
+            avatarBroadcastState.getObject().remove(id);
+        });
+    }
+
+    /**
+     * The entity may change again before the commit, the index gets it as saved.
+     */
+    private static Avatar copy(Avatar avatar) {
+        Avatar copy = new Avatar();
+        copy.setId(avatar.getId());
+        copy.setName(avatar.getName());
+        copy.setType(avatar.getType());
+        copy.setImage(avatar.getImage());
+        copy.setWaiting(avatar.getWaiting());
+        copy.setMain(avatar.getMain());
+        copy.setX(avatar.getX());
+        copy.setY(avatar.getY());
+        copy.setMapId(avatar.getMapId());
+        return copy;
+    }
+
+    private static void afterCommit(Runnable update) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    update.run();
+                }
+            });
+        } else {
+            update.run();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ca.onepoint.yul.occupancy;
+
+import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.repository.AvatarRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind of the avatar positions : the moves are kept in memory, only the last one of each avatar,
+ * and saved together every interval, or as soon as max-pending avatars are waiting.
+ * The occupancy grid and the spatial index are updated by the moves themselves, the database follows
+ * within an interval. The moves not saved are kept for the next flush, unless the avatar moved again since.
+ */
+@Component
+public class AvatarPositionWriter {
+
+    @Resource
+    private AvatarRepository avatarRepository;
+
+    @Resource
+    private ScheduledExecutorService positionWriterScheduler;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${yul.avatar.write-behind.interval-ms:1000}")
+    private long intervalMs;
+
+    @Value("${yul.avatar.write-behind.max-pending:1000}")
+    private int maxPending;
+
+    private final ConcurrentHashMap<Integer, AvatarDto> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private Timer flushTimer;
+    private DistributionSummary flushSize;
+    private Counter failures;
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("yul.avatar.write-behind.pending", pending, ConcurrentHashMap::size)
+                .description("Avatars whose position is not saved yet")
+                .register(meterRegistry);
+        flushTimer = Timer.builder("yul.avatar.write-behind.flush")
+                .description("Saves of the pending positions, in one transaction")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        flushSize = DistributionSummary.builder("yul.avatar.write-behind.batch")
+                .description("Positions saved by a flush")
+                .baseUnit("avatars")
+                .register(meterRegistry);
+        failures = Counter.builder("yul.avatar.write-behind.failures")
+                .description("Flushes that failed, their positions kept for the next one")
+                .register(meterRegistry);
+        positionWriterScheduler.scheduleWithFixedDelay(this::flushQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Queues the position of an avatar, replacing the one not saved yet.
+     */
+    public void write(Integer avatarId, int x, int y, Integer waiting) {
+        AvatarDto position = new AvatarDto();
+        position.setId(avatarId);
+        position.setX(x);
+        position.setY(y);
+        position.setWaiting(waiting);
+        pending.merge(avatarId, position, (previous, next) -> {
+            // A move without waiting state keeps the one of the previous move
+            if (next.getWaiting() == null) {
+                next.setWaiting(previous.getWaiting());
+            }
+            return next;
+        });
+        if (pending.size() >= maxPending && flushRequested.compareAndSet(false, true)) {
+            positionWriterScheduler.execute(this::flushQuietly);
+        }
+    }
+
+    /**
+     * Saves the pending positions now.
+     *
+     * @return the number of positions saved
+     */
+    public synchronized int flush() {
+        flushRequested.set(false);
+        List<AvatarDto> positions = new ArrayList<>(pending.size());
+        for (Integer avatarId : pending.keySet()) {
+            AvatarDto position = pending.remove(avatarId);
+            if (position != null) {
+                positions.add(position);
+            }
+        }
+        if (positions.isEmpty()) {
+            return 0;
+        }
+        try {
+            flushTimer.record(() -> avatarRepository.updatePositions(positions));
+        } catch (RuntimeException e) {
+            failures.increment();
+            for (AvatarDto position : positions) {
+                pending.putIfAbsent(position.getId(), position);
+            }
+            throw e;
+        }
+        flushSize.record(positions.size());
+        return positions.size();
+    }
+
+    public int getPending() {
+        return pending.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        flushQuietly();
+    }
+
+    private void flushQuietly() {
+        // An exception would cancel the next flushes
+        try {
+            flush();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+}
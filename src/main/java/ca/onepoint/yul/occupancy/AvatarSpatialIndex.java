@@ -0,0 +1,320 @@
+package ca.onepoint.yul.occupancy;
+
+import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.entity.Avatar;
+import ca.onepoint.yul.repository.AvatarRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+
+/**
+ * Avatars by position, in square buckets of bucket-size squares, kept in memory and updated as they
+ * move or are saved. A query only looks at the buckets around its position, so its cost follows the
+ * number of avatars around, not the number of avatars. Every type of avatar has its own buckets too,
+ * so that a query on some types does not go through the others.
+ * The avatars are loaded once, on first use. The ones without a position are not indexed.
+ */
+@Component
+public class AvatarSpatialIndex {
+
+    @Resource
+    private AvatarRepository avatarRepository;
+
+    @Value("${yul.avatar-index.bucket-size:8}")
+    private int bucketSize;
+
+    private final HashMap<Integer, AvatarDto> avatars = new HashMap<>();
+    private final Buckets all = new Buckets();
+    private final HashMap<Integer, Buckets> byType = new HashMap<>();
+    private boolean loaded;
+
+    public synchronized void move(Integer avatarId, int x, int y, Integer waiting) {
+        ensureLoaded();
+        AvatarDto avatar = avatars.get(avatarId);
+        if (avatar == null) {
+            avatar = new AvatarDto();
+            avatar.setId(avatarId);
+        } else {
+            unindex(avatar);
+        }
+        avatar.setX(x);
+        avatar.setY(y);
+        if (waiting != null) {
+            avatar.setWaiting(waiting);
+        }
+        index(avatar);
+    }
+
+    public synchronized void save(Avatar saved) {
+        ensureLoaded();
+        AvatarDto previous = avatars.get(saved.getId());
+        if (previous != null) {
+            unindex(previous);
+        }
+        index(toDto(saved));
+    }
+
+    public synchronized void remove(Integer avatarId) {
+        ensureLoaded();
+        AvatarDto previous = avatars.get(avatarId);
+        if (previous != null) {
+            unindex(previous);
+        }
+    }
+
+    /**
+     * @param types types of avatar to return, all of them when null or empty
+     * @return the avatars at most radius squares away, the nearest first
+     */
+    public synchronized List<AvatarDto> within(int x, int y, int radius, Collection<Integer> types) {
+        ensureLoaded();
+        long maxDistance = (long) radius * radius;
+        List<AvatarDto> found = new ArrayList<>();
+        for (Buckets buckets : bucketsOf(types)) {
+            int minBx = Math.max(bucket((long) x - radius), buckets.minBx);
+            int maxBx = Math.min(bucket((long) x + radius), buckets.maxBx);
+            int minBy = Math.max(bucket((long) y - radius), buckets.minBy);
+            int maxBy = Math.min(bucket((long) y + radius), buckets.maxBy);
+            for (int by = minBy; by <= maxBy; by++) {
+                for (int bx = minBx; bx <= maxBx; bx++) {
+                    List<AvatarDto> bucket = buckets.get(bx, by);
+                    if (bucket == null) {
+                        continue;
+                    }
+                    for (AvatarDto avatar : bucket) {
+                        if (distance(avatar, x, y) <= maxDistance) {
+                            found.add(avatar);
+                        }
+                    }
+                }
+            }
+        }
+        found.sort(byDistance(x, y));
+        return copies(found);
+    }
+
+    /**
+     * @param types types of avatar to return, all of them when null or empty
+     * @return the k avatars nearest to the position, the nearest first
+     */
+    public synchronized List<AvatarDto> nearest(int x, int y, int k, Collection<Integer> types) {
+        ensureLoaded();
+        Comparator<AvatarDto> byDistance = byDistance(x, y);
+        // The k nearest so far, the farthest of them on top
+        PriorityQueue<AvatarDto> nearest = new PriorityQueue<>(byDistance.reversed());
+        List<Buckets> searched = bucketsOf(types);
+        int bx = bucket(x);
+        int by = bucket(y);
+        // Rings of buckets around the one of the position, starting with the first one holding avatars
+        int ring = Integer.MAX_VALUE;
+        for (Buckets buckets : searched) {
+            ring = Math.min(ring, buckets.ringTo(bx, by));
+        }
+        for (; ring < Integer.MAX_VALUE; ring++) {
+            boolean covered = true;
+            for (Buckets buckets : searched) {
+                covered &= buckets.searchRing(bx, by, ring, avatar -> {
+                    nearest.add(avatar);
+                    if (nearest.size() > k) {
+                        nearest.poll();
+                    }
+                });
+            }
+            // The next ring is at least ring * size + 1 squares away along an axis
+            long nextRing = (long) ring * bucketSize + 1;
+            if (covered || (nearest.size() == k && distance(nearest.peek(), x, y) < nextRing * nextRing)) {
+                break;
+            }
+        }
+        List<AvatarDto> found = new ArrayList<>(nearest);
+        found.sort(byDistance);
+        return copies(found);
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        if (bucketSize < 1) {
+            throw new IllegalStateException("Invalid bucket size " + bucketSize);
+        }
+        for (Avatar avatar : avatarRepository.findAll()) {
+            index(toDto(avatar));
+        }
+        loaded = true;
+    }
+
+    private void index(AvatarDto avatar) {
+        avatars.put(avatar.getId(), avatar);
+        if (avatar.getX() == null || avatar.getY() == null) {
+            return;
+        }
+        all.add(bucket(avatar.getX()), bucket(avatar.getY()), avatar);
+        if (avatar.getType() != null) {
+            byType.computeIfAbsent(avatar.getType(), type -> new Buckets()).add(bucket(avatar.getX()), bucket(avatar.getY()), avatar);
+        }
+    }
+
+    private void unindex(AvatarDto avatar) {
+        avatars.remove(avatar.getId());
+        if (avatar.getX() == null || avatar.getY() == null) {
+            return;
+        }
+        all.remove(bucket(avatar.getX()), bucket(avatar.getY()), avatar);
+        if (avatar.getType() != null) {
+            byType.get(avatar.getType()).remove(bucket(avatar.getX()), bucket(avatar.getY()), avatar);
+        }
+    }
+
+    private List<Buckets> bucketsOf(Collection<Integer> types) {
+        List<Buckets> buckets = new ArrayList<>();
+        if (types == null || types.isEmpty()) {
+            buckets.add(all);
+        } else {
+            for (Integer type : types) {
+                Buckets ofType = byType.get(type);
+                if (ofType != null && !buckets.contains(ofType)) {
+                    buckets.add(ofType);
+                }
+            }
+        }
+        return buckets;
+    }
+
+    private int bucket(long coordinate) {
+        return (int) Math.floorDiv(coordinate, bucketSize);
+    }
+
+    private static long distance(AvatarDto avatar, int x, int y) {
+        long dx = avatar.getX() - x;
+        long dy = avatar.getY() - y;
+        return dx * dx + dy * dy;
+    }
+
+    private static Comparator<AvatarDto> byDistance(int x, int y) {
+        return Comparator.<AvatarDto>comparingLong(avatar -> distance(avatar, x, y)).thenComparing(AvatarDto::getId);
+    }
+
+    private static AvatarDto toDto(Avatar avatar) {
+        AvatarDto avatarDto = new AvatarDto();
+        avatarDto.setId(avatar.getId());
+        avatarDto.setImage(avatar.getImage());
+        avatarDto.setName(avatar.getName());
+        avatarDto.setWaiting(avatar.getWaiting());
+        avatarDto.setMain(avatar.getMain());
+        avatarDto.setType(avatar.getType());
+        avatarDto.setX(avatar.getX());
+        avatarDto.setY(avatar.getY());
+        return avatarDto;
+    }
+
+    /**
+     * The indexed DTOs change with the moves, the callers get their own.
+     */
+    private static List<AvatarDto> copies(List<AvatarDto> found) {
+        List<AvatarDto> copies = new ArrayList<>(found.size());
+        for (AvatarDto avatar : found) {
+            AvatarDto copy = new AvatarDto();
+            copy.setId(avatar.getId());
+            copy.setImage(avatar.getImage());
+            copy.setName(avatar.getName());
+            copy.setWaiting(avatar.getWaiting());
+            copy.setMain(avatar.getMain());
+            copy.setType(avatar.getType());
+            copy.setX(avatar.getX());
+            copy.setY(avatar.getY());
+            copies.add(copy);
+        }
+        return copies;
+    }
+
+    /**
+     * Avatars of the non-empty buckets, with the bounds of the buckets ever used.
+     */
+    private static final class Buckets {
+        private final HashMap<Long, List<AvatarDto>> buckets = new HashMap<>();
+        private int minBx = Integer.MAX_VALUE;
+        private int maxBx = Integer.MIN_VALUE;
+        private int minBy = Integer.MAX_VALUE;
+        private int maxBy = Integer.MIN_VALUE;
+
+        private List<AvatarDto> get(int bx, int by) {
+            return buckets.get(key(bx, by));
+        }
+
+        private void add(int bx, int by, AvatarDto avatar) {
+            buckets.computeIfAbsent(key(bx, by), key -> new ArrayList<>()).add(avatar);
+            minBx = Math.min(minBx, bx);
+            maxBx = Math.max(maxBx, bx);
+            minBy = Math.min(minBy, by);
+            maxBy = Math.max(maxBy, by);
+        }
+
+        private void remove(int bx, int by, AvatarDto avatar) {
+            long key = key(bx, by);
+            List<AvatarDto> bucket = buckets.get(key);
+            bucket.remove(avatar);
+            if (bucket.isEmpty()) {
+                buckets.remove(key);
+            }
+        }
+
+        /**
+         * @return the first ring around a bucket holding buckets in use, MAX_VALUE when there are none
+         */
+        private int ringTo(int bx, int by) {
+            if (buckets.isEmpty()) {
+                return Integer.MAX_VALUE;
+            }
+            int dx = Math.max(0, Math.max(minBx - bx, bx - maxBx));
+            int dy = Math.max(0, Math.max(minBy - by, by - maxBy));
+            return Math.max(dx, dy);
+        }
+
+        /**
+         * Goes through the avatars of the ring of buckets at the given distance from a bucket, within the bounds.
+         *
+         * @return true when the ring covers all the buckets in use
+         */
+        private boolean searchRing(int bx, int by, int ring, Consumer<AvatarDto> visitor) {
+            if (buckets.isEmpty()) {
+                return true;
+            }
+            for (int ry = Math.max(by - ring, minBy); ry <= Math.min(by + ring, maxBy); ry++) {
+                if (ry == by - ring || ry == by + ring) {
+                    for (int rx = Math.max(bx - ring, minBx); rx <= Math.min(bx + ring, maxBx); rx++) {
+                        visit(rx, ry, visitor);
+                    }
+                } else {
+                    // Only the ends of the row, the inside was searched by the previous rings
+                    if (bx - ring >= minBx) {
+                        visit(bx - ring, ry, visitor);
+                    }
+                    if (bx + ring <= maxBx) {
+                        visit(bx + ring, ry, visitor);
+                    }
+                }
+            }
+            return bx - ring <= minBx && bx + ring >= maxBx && by - ring <= minBy && by + ring >= maxBy;
+        }
+
+        private void visit(int bx, int by, Consumer<AvatarDto> visitor) {
+            List<AvatarDto> bucket = buckets.get(key(bx, by));
+            if (bucket != null) {
+                bucket.forEach(visitor);
+            }
+        }
+
+        private static long key(int bx, int by) {
+            return ((long) bx << 32) | (by & 0xFFFFFFFFL);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package ca.onepoint.yul.occupancy;
+
+import ca.onepoint.yul.entity.Avatar;
+import ca.onepoint.yul.grid.MapGrid;
+import ca.onepoint.yul.pathfinding.CellSet;
+import ca.onepoint.yul.repository.AvatarRepository;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Squares occupied by the avatars, one bitset per map, kept in memory and updated as they move or are saved,
+ * so that a path request reads the blocked cells without going to the database.
+ * An avatar only blocks the map it is on. The avatars are loaded once, on first use, and the bitset of a map
+ * is built on its first request, then again only when the map is resized.
+ */
+@Component
+public class OccupancyGrid {
+
+    @Resource
+    private AvatarRepository avatarRepository;
+
+    /** Position of each avatar by id, packed by {@link #pack} */
+    private final HashMap<Integer, Long> positions = new HashMap<>();
+    /** Map of each avatar by id */
+    private final HashMap<Integer, Long> maps = new HashMap<>();
+    private final HashMap<Long, Layer> layers = new HashMap<>();
+    private boolean loaded;
+    /** Last version given to a layer, so that the versions of a map only grow, even when it is rebuilt */
+    private long version;
+
+    /**
+     * Cells occupied by an avatar on the map, read-only. The same snapshot is returned as long as no avatar
+     * of the map moves.
+     */
+    public synchronized Snapshot snapshot(MapGrid grid) {
+        ensureLoaded();
+        Layer layer = layers.get(grid.getId());
+        if (layer == null || layer.width != grid.getWidth() || layer.height != grid.getHeight()) {
+            layer = build(grid.getId(), grid.getWidth(), grid.getHeight());
+            layers.put(grid.getId(), layer);
+        }
+        if (layer.snapshot == null || layer.snapshot.version != layer.version) {
+            layer.snapshot = new Snapshot(layer.occupied.copy(), layer.version);
+        }
+        return layer.snapshot;
+    }
+
+    /**
+     * Moves an avatar on the map it is on, ignored for an avatar not saved yet.
+     */
+    public synchronized void move(Integer avatarId, int x, int y) {
+        ensureLoaded();
+        Long mapId = maps.get(avatarId);
+        if (mapId != null) {
+            place(avatarId, mapId, x, y);
+        }
+    }
+
+    public synchronized void move(Integer avatarId, Integer mapId, int x, int y) {
+        ensureLoaded();
+        place(avatarId, Long.valueOf(mapId), x, y);
+    }
+
+    public synchronized void remove(Integer avatarId) {
+        ensureLoaded();
+        Long previous = positions.remove(avatarId);
+        Long previousMap = maps.remove(avatarId);
+        if (previous != null) {
+            leave(previousMap, previous);
+        }
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            for (Avatar avatar : avatarRepository.findAll()) {
+                if (avatar.getX() != null && avatar.getY() != null && avatar.getMapId() != null) {
+                    place(avatar.getId(), Long.valueOf(avatar.getMapId()), avatar.getX(), avatar.getY());
+                }
+            }
+            loaded = true;
+        }
+    }
+
+    private void place(Integer avatarId, Long mapId, int x, int y) {
+        long position = pack(x, y);
+        Long previous = positions.put(avatarId, position);
+        Long previousMap = maps.put(avatarId, mapId);
+        if (previous != null) {
+            if (previous == position && mapId.equals(previousMap)) {
+                return;
+            }
+            leave(previousMap, previous);
+        }
+        Layer layer = layers.get(mapId);
+        if (layer != null) {
+            int cell = layer.cell(position);
+            if (cell >= 0 && layer.counts[cell]++ == 0) {
+                layer.occupied.add(cell);
+                layer.version = ++version;
+            }
+        }
+    }
+
+    private void leave(Long mapId, long position) {
+        Layer layer = layers.get(mapId);
+        if (layer != null) {
+            int cell = layer.cell(position);
+            if (cell >= 0 && --layer.counts[cell] == 0) {
+                layer.occupied.remove(cell);
+                layer.version = ++version;
+            }
+        }
+    }
+
+    private Layer build(Long mapId, int width, int height) {
+        Layer layer = new Layer(width, height);
+        for (Map.Entry<Integer, Long> position : positions.entrySet()) {
+            if (mapId.equals(maps.get(position.getKey()))) {
+                int cell = layer.cell(position.getValue());
+                if (cell >= 0 && layer.counts[cell]++ == 0) {
+                    layer.occupied.add(cell);
+                }
+            }
+        }
+        layer.version = ++version;
+        return layer;
+    }
+
+    /**
+     * Occupied cells with the version they were copied at : a greater version is a later state of the avatars of the map.
+     */
+    public static final class Snapshot {
+        private final CellSet blocked;
+        private final long version;
+
+        private Snapshot(CellSet blocked, long version) {
+            this.blocked = blocked;
+            this.version = version;
+        }
+
+        public CellSet getBlocked() {
+            return blocked;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+    }
+
+    /**
+     * Avatars of one map.
+     */
+    private static final class Layer {
+        private final int width;
+        private final int height;
+        /** Number of avatars on each cell of the map */
+        private final int[] counts;
+        private final CellSet occupied;
+        private long version;
+        private Snapshot snapshot;
+
+        private Layer(int width, int height) {
+            this.width = width;
+            this.height = height;
+            this.counts = new int[width * height];
+            this.occupied = new CellSet(width * height);
+        }
+
+        /**
+         * @return the cell of a position, -1 when out of the map
+         */
+        private int cell(long position) {
+            int x = (int) (position >> 32);
+            int y = (int) position;
+            return x >= 0 && y >= 0 && x < width && y < height ? y * width + x : -1;
+        }
+    }
+
+    private static long pack(int x, int y) {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,73 @@
+package ca.onepoint.yul.pathfinding;
+
+/**
+ * A* on cell indices, please read https://en.wikipedia.org/wiki/A*_search_algorithm
+ * Every move costs 1, teleport links included. The heuristic accounts for the links so
+ * that it stays consistent, hence a cell is never expanded twice.
+ */
+public final class AStarPathFinder {
+
+    private AStarPathFinder() {
+    }
+
+    /**
+     * @param blocked cells occupied by an avatar, the start cell may be one of them
+     * @return the cells from the one after the start to the target, or null when unreachable
+     */
+    public static int[] findPath(MapGraph graph, CellSet blocked, int from, int to) {
+        return findPath(graph, blocked, from, to, null, null);
+    }
+
+    /**
+     * Same search, guided by the distance field of the target : the distances without avatars are
+     * an exact heuristic, so only the detours around avatars get explored.
+     *
+     * @param guide distance field of the target, null for the regular heuristic
+     * @param stats counters to update, may be null
+     */
+    public static int[] findPath(MapGraph graph, CellSet blocked, int from, int to, DistanceField guide, SearchStats stats) {
+        SearchContext context = SearchContext.acquire(graph.size());
+        try {
+            return search(context, graph, blocked, from, to, guide);
+        } finally {
+            if (stats != null) {
+                stats.record(context.expanded);
+            }
+            context.release();
+        }
+    }
+
+    private static int[] search(SearchContext context, MapGraph graph, CellSet blocked, int from, int to, DistanceField guide) {
+        IndexedMinHeap open = context.open;
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int bestExitCost = graph.bestExitCost(to);
+
+        context.reach(from, 0, from);
+        open.push(from, guide != null ? guide.distance(from) : graph.heuristic(from, to, bestExitCost));
+        while (!open.isEmpty()) {
+            int current = open.pop();
+            if (current == to) {
+                return context.path(from, to);
+            }
+            context.expanded++;
+            float tentative = context.g(current) + 1;
+            for (int edge = offsets[current], end = offsets[current + 1]; edge < end; edge++) {
+                int neighbour = targets[edge];
+                if (tentative < context.g(neighbour) && !blocked.contains(neighbour)) {
+                    float h;
+                    if (guide == null) {
+                        h = graph.heuristic(neighbour, to, bestExitCost);
+                    } else if (guide.distance(neighbour) != DistanceField.UNREACHABLE) {
+                        h = guide.distance(neighbour);
+                    } else {
+                        continue;
+                    }
+                    context.reach(neighbour, tentative, current);
+                    open.push(neighbour, tentative + h);
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,60 @@
+package ca.onepoint.yul.pathfinding;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Fixed size bitset over the cells of a map (index = y * width + x).
+ */
+public final class CellSet {
+
+    private final long[] words;
+    private final int size;
+
+    public CellSet(int size) {
+        this.size = size;
+        this.words = new long[(size + 63) >>> 6];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean contains(int cell) {
+        return (words[cell >>> 6] & (1L << cell)) != 0;
+    }
+
+    public void add(int cell) {
+        words[cell >>> 6] |= 1L << cell;
+    }
+
+    public void remove(int cell) {
+        words[cell >>> 6] &= ~(1L << cell);
+    }
+
+    /**
+     * Calls the visitor with every cell whose membership differs between the two sets, then makes
+     * this set equal to the other one. Both sets must have the same size.
+     */
+    public void syncWith(CellSet other, IntConsumer changedCellVisitor) {
+        for (int i = 0; i < words.length; i++) {
+            long changed = words[i] ^ other.words[i];
+            while (changed != 0) {
+                int bit = Long.numberOfTrailingZeros(changed);
+                changedCellVisitor.accept((i << 6) + bit);
+                changed &= changed - 1;
+            }
+            words[i] = other.words[i];
+        }
+    }
+
+    public CellSet copy() {
+        CellSet copy = new CellSet(size);
+        System.arraycopy(words, 0, copy.words, 0, words.length);
+        return copy;
+    }
+
+    public boolean sameAs(CellSet other) {
+        return Arrays.equals(words, other.words);
+    }
+}
@@ -0,0 +1,103 @@
+package ca.onepoint.yul.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * Distance from every cell to one target, computed by a reverse breadth-first search on the
+ * walkable cells, avatars ignored. Following the decreasing distances gives a shortest path
+ * in O(path length), as long as no avatar stands in the way.
+ */
+public final class DistanceField {
+
+    public static final int UNREACHABLE = -1;
+
+    private final MapGraph graph;
+    private final int target;
+    private final int[] distances;
+
+    private DistanceField(MapGraph graph, int target, int[] distances) {
+        this.graph = graph;
+        this.target = target;
+        this.distances = distances;
+    }
+
+    public static DistanceField compute(MapGraph graph, int target) {
+        int[] distances = new int[graph.size()];
+        Arrays.fill(distances, UNREACHABLE);
+        int[] queue = new int[graph.size()];
+        int[] predecessors = new int[graph.maxDegree()];
+        int head = 0;
+        int tail = 0;
+        distances[target] = 0;
+        queue[tail++] = target;
+        while (head < tail) {
+            int cell = queue[head++];
+            int distance = distances[cell] + 1;
+            int count = graph.predecessors(cell, predecessors);
+            for (int i = 0; i < count; i++) {
+                int predecessor = predecessors[i];
+                if (distances[predecessor] == UNREACHABLE) {
+                    // A wall still gets a distance, a search may start from it, but it is never gone through
+                    distances[predecessor] = distance;
+                    if (graph.isWalkable(predecessor)) {
+                        queue[tail++] = predecessor;
+                    }
+                }
+            }
+        }
+        return new DistanceField(graph, target, distances);
+    }
+
+    public MapGraph getGraph() {
+        return graph;
+    }
+
+    public int getTarget() {
+        return target;
+    }
+
+    public int size() {
+        return distances.length;
+    }
+
+    /**
+     * @return the number of moves to the target when no avatar is in the way, or UNREACHABLE
+     */
+    public int distance(int cell) {
+        return distances[cell];
+    }
+
+    /**
+     * Walks down the distances from the start cell, stepping only on free cells.
+     *
+     * @return the cells from the one after the start to the target, or null when every
+     * shortest way is blocked by an avatar (or when the target is unreachable)
+     */
+    public int[] descend(CellSet blocked, int from) {
+        int distance = distances[from];
+        if (distance == UNREACHABLE) {
+            return null;
+        }
+        int[] path = new int[distance];
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int cell = from;
+        for (int step = 0; step < path.length; step++) {
+            int expected = distance - step - 1;
+            int next = -1;
+            for (int edge = offsets[cell], end = offsets[cell + 1]; edge < end; edge++) {
+                int neighbour = targets[edge];
+                if (distances[neighbour] == expected && !blocked.contains(neighbour)) {
+                    next = neighbour;
+                    break;
+                }
+            }
+            if (next < 0) {
+                return null;
+            }
+            path[step] = next;
+            cell = next;
+        }
+        return path;
+    }
+}
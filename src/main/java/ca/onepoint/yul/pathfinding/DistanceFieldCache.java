@@ -0,0 +1,94 @@
+package ca.onepoint.yul.pathfinding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+
+/**
+ * Distance fields of the destination squares (shops, companies and finish), per graph, so per map
+ * version and kind of object. Fields are computed the first time their target is asked for and kept
+ * in LRU order within a budget of cells, a field costs 4 bytes per cell of the map.
+ */
+@Component
+public class DistanceFieldCache {
+
+    @Value("${yul.path-finding.distance-fields.max-cells:16000000}")
+    private long maxCells;
+
+    private final LinkedHashMap<Key, DistanceField> fields = new LinkedHashMap<>(16, 0.75f, true);
+    private long cells;
+
+    /**
+     * Squares worth a distance field : 3 is a shop or company, 4 the finish.
+     */
+    public static boolean isDestination(int value) {
+        return value == 3 || value == 4;
+    }
+
+    public DistanceField get(MapGraph graph, int target) {
+        Key key = new Key(graph, target);
+        synchronized (fields) {
+            DistanceField field = fields.get(key);
+            if (field != null) {
+                return field;
+            }
+        }
+        // Computed outside of the lock, two threads may compute the same field once
+        DistanceField field = DistanceField.compute(graph, target);
+        synchronized (fields) {
+            DistanceField previous = fields.putIfAbsent(key, field);
+            if (previous != null) {
+                return previous;
+            }
+            cells += field.size();
+            Iterator<DistanceField> eldest = fields.values().iterator();
+            while (cells > maxCells && fields.size() > 1) {
+                cells -= eldest.next().size();
+                eldest.remove();
+            }
+        }
+        return field;
+    }
+
+    /**
+     * Drops the fields of a graph that has been replaced, the fields of the other maps are kept.
+     */
+    public void evict(MapGraph graph) {
+        synchronized (fields) {
+            Iterator<DistanceField> iterator = fields.values().iterator();
+            while (iterator.hasNext()) {
+                DistanceField field = iterator.next();
+                if (field.getGraph() == graph) {
+                    cells -= field.size();
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private static final class Key {
+        private final MapGraph graph;
+        private final int target;
+
+        private Key(MapGraph graph, int target) {
+            this.graph = graph;
+            this.target = target;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return graph == key.graph && target == key.target;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(graph), target);
+        }
+    }
+}
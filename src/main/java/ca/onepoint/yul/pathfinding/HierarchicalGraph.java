@@ -0,0 +1,535 @@
+package ca.onepoint.yul.pathfinding;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical path-finding (HPA*, Botea, Müller and Schaeffer, "Near Optimal Hierarchical Path-Finding").
+ * The grid is cut in square clusters. Where free cells of two clusters touch, an entrance is placed
+ * on each side of the border, and the distances between the entrances of a cluster are computed with
+ * a breadth first search restricted to the cluster. The ends of the teleport links are entrances too,
+ * the links being edges of the abstract graph like the border crossings.
+ * A query searches this small graph, then refines each abstract edge inside its cluster. Paths are
+ * near optimal since they go through the entrances, a path staying in a single cluster is compared
+ * with the abstract one.
+ * Avatars are part of the abstraction : when they move, or when the map changes, only the clusters
+ * around the changed cells are rebuilt, by the next query.
+ */
+public final class HierarchicalGraph {
+
+    /** The abstract edge is refined by a search inside the cluster */
+    private static final byte WALK = 0;
+    /** The abstract edge is a single move : a border crossing or a teleport */
+    private static final byte STEP = 1;
+    private static final int UNREACHABLE = -1;
+    /** Longer free stretches of a border get an entrance at each end instead of one in the middle */
+    private static final int SINGLE_ENTRANCE_MAX_RUN = 6;
+
+    private final int clusterSize;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private MapGraph graph;
+    private CellSet blocked;
+    /** Occupancy version of the blocked cells, only ever moves forward */
+    private long syncedVersion = -1;
+    private int width;
+    private int clustersX;
+    private int clustersY;
+    private Cluster[] clusters;
+    /** Entrance pairs (inside, outside) crossing the east border of each cluster */
+    private int[][] eastCrossings;
+    /** Entrance pairs (inside, outside) crossing the south border of each cluster */
+    private int[][] southCrossings;
+    private boolean dirty;
+
+    public HierarchicalGraph(int clusterSize) {
+        if (clusterSize < 2) {
+            throw new IllegalArgumentException("Clusters must be at least 2 squares wide");
+        }
+        this.clusterSize = clusterSize;
+    }
+
+    public int[] findPath(MapGraph graph, CellSet blocked, long occupancyVersion, int from, int to) {
+        return findPath(graph, blocked, occupancyVersion, from, to, null);
+    }
+
+    /**
+     * Brings the abstraction up to date with the graph and the blocked cells, then searches it.
+     * The hierarchy only moves forward : a caller holding an older map or older avatars than the ones
+     * it follows gets a plain A* search, instead of rebuilding the clusters back and forth.
+     *
+     * @param occupancyVersion version of the blocked cells, a greater one for a later state of the avatars
+     * @param stats            counters to update with the abstract nodes expanded, may be null
+     * @return the cells from the one after the start to the target, or null when unreachable
+     */
+    public int[] findPath(MapGraph graph, CellSet blocked, long occupancyVersion, int from, int to, SearchStats stats) {
+        lock.readLock().lock();
+        try {
+            if (isSynced(graph, occupancyVersion)) {
+                return search(from, to, stats);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        boolean synced = false;
+        lock.writeLock().lock();
+        try {
+            if (!isBehind(graph, occupancyVersion)) {
+                if (!isSynced(graph, occupancyVersion)) {
+                    update(graph, blocked, occupancyVersion);
+                }
+                // Downgraded to search the state just built, before another caller moves it on
+                lock.readLock().lock();
+                synced = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (!synced) {
+            return AStarPathFinder.findPath(graph, blocked, from, to, null, stats);
+        }
+        try {
+            return search(from, to, stats);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private boolean isSynced(MapGraph graph, long occupancyVersion) {
+        return this.graph == graph && !dirty && syncedVersion == occupancyVersion;
+    }
+
+    private boolean isBehind(MapGraph graph, long occupancyVersion) {
+        return this.graph != null && (graph.getGrid().getVersion() < this.graph.getGrid().getVersion() || occupancyVersion < syncedVersion);
+    }
+
+    private void update(MapGraph graph, CellSet blocked, long occupancyVersion) {
+        if (this.graph != graph) {
+            rebase(graph);
+        }
+        this.blocked.syncWith(blocked, this::markChanged);
+        syncedVersion = occupancyVersion;
+        if (dirty) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Switches to a new version of the graph, keeping the clusters where nothing changed.
+     */
+    private void rebase(MapGraph graph) {
+        MapGraph previous = this.graph;
+        this.graph = graph;
+        if (previous == null || previous.getWidth() != graph.getWidth() || previous.getHeight() != graph.getHeight()
+                || !sameLinks(previous, graph)) {
+            reset();
+            return;
+        }
+        for (int cell = 0; cell < graph.size(); cell++) {
+            if (graph.isWalkable(cell) != previous.isWalkable(cell)) {
+                markChanged(cell);
+            }
+        }
+    }
+
+    private void reset() {
+        width = graph.getWidth();
+        clustersX = (width + clusterSize - 1) / clusterSize;
+        clustersY = (graph.getHeight() + clusterSize - 1) / clusterSize;
+        clusters = new Cluster[clustersX * clustersY];
+        for (int cy = 0; cy < clustersY; cy++) {
+            for (int cx = 0; cx < clustersX; cx++) {
+                clusters[cy * clustersX + cx] = new Cluster(cx * clusterSize, cy * clusterSize,
+                        Math.min(width, (cx + 1) * clusterSize), Math.min(graph.getHeight(), (cy + 1) * clusterSize));
+            }
+        }
+        eastCrossings = new int[clusters.length][];
+        southCrossings = new int[clusters.length][];
+        blocked = new CellSet(graph.size());
+        dirty = true;
+    }
+
+    private static boolean sameLinks(MapGraph a, MapGraph b) {
+        if (a.getLinkCount() != b.getLinkCount()) {
+            return false;
+        }
+        for (int link = 0; link < a.getLinkCount(); link++) {
+            if (a.getLinkFrom(link) != b.getLinkFrom(link) || a.getLinkTo(link) != b.getLinkTo(link)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void markChanged(int cell) {
+        clusters[clusterOf(cell)].bordersDirty = true;
+        dirty = true;
+    }
+
+    /**
+     * Rescans the borders of the changed clusters, then recomputes the entrances and distances of
+     * the clusters whose cells or borders changed.
+     */
+    private void rebuild() {
+        for (int c = 0; c < clusters.length; c++) {
+            Cluster cluster = clusters[c];
+            if (!cluster.bordersDirty) {
+                continue;
+            }
+            int cx = c % clustersX;
+            int cy = c / clustersX;
+            if (cx < clustersX - 1) {
+                scanEastBorder(c);
+            }
+            if (cx > 0) {
+                scanEastBorder(c - 1);
+            }
+            if (cy < clustersY - 1) {
+                scanSouthBorder(c);
+            }
+            if (cy > 0) {
+                scanSouthBorder(c - clustersX);
+            }
+            cluster.bordersDirty = false;
+            cluster.distancesDirty = true;
+        }
+        for (Cluster cluster : clusters) {
+            if (cluster.distancesDirty) {
+                computeEntrances(cluster);
+                computeDistances(cluster);
+                cluster.distancesDirty = false;
+            }
+        }
+        dirty = false;
+    }
+
+    private void scanEastBorder(int c) {
+        Cluster cluster = clusters[c];
+        int first = cluster.y0 * width + cluster.x1 - 1;
+        int[] crossings = scanBorder(first, 1, width, cluster.y1 - cluster.y0);
+        if (!Arrays.equals(crossings, eastCrossings[c])) {
+            eastCrossings[c] = crossings;
+            cluster.distancesDirty = true;
+            clusters[c + 1].distancesDirty = true;
+        }
+    }
+
+    private void scanSouthBorder(int c) {
+        Cluster cluster = clusters[c];
+        int first = (cluster.y1 - 1) * width + cluster.x0;
+        int[] crossings = scanBorder(first, width, 1, cluster.x1 - cluster.x0);
+        if (!Arrays.equals(crossings, southCrossings[c])) {
+            southCrossings[c] = crossings;
+            cluster.distancesDirty = true;
+            clusters[c + clustersX].distancesDirty = true;
+        }
+    }
+
+    /**
+     * Places the entrances along a border : one in the middle of each stretch where both sides are free,
+     * or one at each end of the longer stretches.
+     *
+     * @param first  inside cell at the start of the border
+     * @param across offset from an inside cell to the outside cell facing it
+     * @param along  offset between two consecutive inside cells
+     * @return the pairs (inside, outside) of the entrances
+     */
+    private int[] scanBorder(int first, int across, int along, int length) {
+        int[] crossings = new int[4 * length];
+        int count = 0;
+        int run = 0;
+        for (int i = 0; i <= length; i++) {
+            int cell = first + i * along;
+            if (i < length && graph.isFree(cell, blocked) && graph.isFree(cell + across, blocked)) {
+                run++;
+                continue;
+            }
+            if (run > 0) {
+                int start = first + (i - run) * along;
+                if (run < SINGLE_ENTRANCE_MAX_RUN) {
+                    int middle = start + (run / 2) * along;
+                    crossings[count++] = middle;
+                    crossings[count++] = middle + across;
+                } else {
+                    int end = cell - along;
+                    crossings[count++] = start;
+                    crossings[count++] = start + across;
+                    crossings[count++] = end;
+                    crossings[count++] = end + across;
+                }
+                run = 0;
+            }
+        }
+        return Arrays.copyOf(crossings, count);
+    }
+
+    private void computeEntrances(Cluster cluster) {
+        int c = clusterOf(cluster.y0 * width + cluster.x0);
+        int[][] borders = new int[][]{
+                eastCrossings[c],
+                southCrossings[c],
+                c % clustersX > 0 ? eastCrossings[c - 1] : null,
+                c >= clustersX ? southCrossings[c - clustersX] : null,
+        };
+        int capacity = 2 * graph.getLinkCount();
+        for (int[] crossings : borders) {
+            capacity += crossings == null ? 0 : crossings.length / 2;
+        }
+        int[] entrances = new int[capacity];
+        int count = 0;
+        for (int border = 0; border < borders.length; border++) {
+            int[] crossings = borders[border];
+            if (crossings != null) {
+                // This cluster is the inside of its east and south borders, the outside of the other two
+                for (int i = border < 2 ? 0 : 1; i < crossings.length; i += 2) {
+                    count = addEntrance(entrances, count, crossings[i]);
+                }
+            }
+        }
+        for (int link = 0; link < graph.getLinkCount(); link++) {
+            for (int end : new int[]{graph.getLinkFrom(link), graph.getLinkTo(link)}) {
+                if (clusterOf(end) == c && graph.isFree(end, blocked)) {
+                    count = addEntrance(entrances, count, end);
+                }
+            }
+        }
+        cluster.entrances = Arrays.copyOf(entrances, count);
+    }
+
+    private static int addEntrance(int[] entrances, int count, int cell) {
+        // A corner cell can be the entrance of two borders
+        for (int i = 0; i < count; i++) {
+            if (entrances[i] == cell) {
+                return count;
+            }
+        }
+        entrances[count] = cell;
+        return count + 1;
+    }
+
+    private void computeDistances(Cluster cluster) {
+        int n = cluster.entrances.length;
+        int[] distances = new int[n * n];
+        for (int i = 0; i < n; i++) {
+            int[] fromEntrance = distancesInCluster(cluster, cluster.entrances[i], null);
+            for (int j = 0; j < n; j++) {
+                distances[i * n + j] = fromEntrance[cluster.local(cluster.entrances[j], width)];
+            }
+        }
+        cluster.distances = distances;
+    }
+
+    /**
+     * Breadth first search from a cell, without leaving its cluster. The cell itself may be blocked.
+     *
+     * @param parents filled with the local index each cell was reached from, may be null
+     * @return the distance to each cell of the cluster by local index, UNREACHABLE when cut off
+     */
+    private int[] distancesInCluster(Cluster cluster, int source, int[] parents) {
+        int clusterWidth = cluster.x1 - cluster.x0;
+        int clusterHeight = cluster.y1 - cluster.y0;
+        int[] distances = new int[clusterWidth * clusterHeight];
+        Arrays.fill(distances, UNREACHABLE);
+        int[] queue = new int[distances.length];
+        int start = cluster.local(source, width);
+        distances[start] = 0;
+        queue[0] = start;
+        int head = 0;
+        int tail = 1;
+        while (head < tail) {
+            int local = queue[head++];
+            int x = local % clusterWidth;
+            int y = local / clusterWidth;
+            for (int direction = 0; direction < 4; direction++) {
+                int nx = x + (direction == 1 ? 1 : direction == 3 ? -1 : 0);
+                int ny = y + (direction == 0 ? -1 : direction == 2 ? 1 : 0);
+                if (nx < 0 || ny < 0 || nx >= clusterWidth || ny >= clusterHeight) {
+                    continue;
+                }
+                int next = ny * clusterWidth + nx;
+                if (distances[next] == UNREACHABLE && graph.isFree((cluster.y0 + ny) * width + cluster.x0 + nx, blocked)) {
+                    distances[next] = distances[local] + 1;
+                    if (parents != null) {
+                        parents[next] = local;
+                    }
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return distances;
+    }
+
+    private int[] search(int from, int to, SearchStats stats) {
+        int goalCluster = clusterOf(to);
+        Cluster start = clusters[clusterOf(from)];
+        Cluster goal = clusters[goalCluster];
+        // The start and the goal are linked to the entrances of their cluster for this query only
+        int[] fromStart = distancesInCluster(start, from, null);
+        int[] toGoal = distancesInCluster(goal, to, null);
+
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        SearchContext context = SearchContext.acquire(graph.size());
+        try {
+            int bestExitCost = graph.bestExitCost(to);
+            context.reach(from, 0, from);
+            context.open.push(from, graph.heuristic(from, to, bestExitCost));
+            while (!context.open.isEmpty()) {
+                int current = context.open.pop();
+                if (current == to) {
+                    return refine(context, from, to);
+                }
+                context.expanded++;
+                int clusterIndex = clusterOf(current);
+                Cluster cluster = clusters[clusterIndex];
+                if (current == from) {
+                    for (int entrance : start.entrances) {
+                        relax(context, from, entrance, fromStart[start.local(entrance, width)], WALK, to, bestExitCost);
+                    }
+                    // The start may be blocked, then it is no entrance but can still leave its cluster
+                    for (int edge = offsets[from], end = graph.firstLinkEdge(from); edge < end; edge++) {
+                        int next = targets[edge];
+                        if (clusterOf(next) != clusterIndex && !blocked.contains(next)) {
+                            relax(context, from, next, 1, STEP, to, bestExitCost);
+                        }
+                    }
+                }
+                for (int edge = graph.firstLinkEdge(current), end = offsets[current + 1]; edge < end; edge++) {
+                    if (!blocked.contains(targets[edge])) {
+                        relax(context, current, targets[edge], 1, STEP, to, bestExitCost);
+                    }
+                }
+                if (clusterIndex == goalCluster) {
+                    // The search from the goal does not go into a blocked start, the one from the start does
+                    int distance = current == from ? fromStart[start.local(to, width)] : toGoal[goal.local(current, width)];
+                    relax(context, current, to, distance, WALK, to, bestExitCost);
+                }
+                int index = cluster.indexOf(current);
+                if (index < 0) {
+                    if (current != from) {
+                        // A square next to a blocked start, linked to the entrances of its cluster for this query only
+                        int[] around = distancesInCluster(cluster, current, null);
+                        for (int entrance : cluster.entrances) {
+                            relax(context, current, entrance, around[cluster.local(entrance, width)], WALK, to, bestExitCost);
+                        }
+                    }
+                    continue;
+                }
+                int n = cluster.entrances.length;
+                for (int j = 0; j < n; j++) {
+                    relax(context, current, cluster.entrances[j], cluster.distances[index * n + j], WALK, to, bestExitCost);
+                }
+                relaxCrossings(context, current, eastCrossings[clusterIndex], 0, to, bestExitCost);
+                relaxCrossings(context, current, southCrossings[clusterIndex], 0, to, bestExitCost);
+                if (clusterIndex % clustersX > 0) {
+                    relaxCrossings(context, current, eastCrossings[clusterIndex - 1], 1, to, bestExitCost);
+                }
+                if (clusterIndex >= clustersX) {
+                    relaxCrossings(context, current, southCrossings[clusterIndex - clustersX], 1, to, bestExitCost);
+                }
+            }
+            return null;
+        } finally {
+            if (stats != null) {
+                stats.record(context.expanded);
+            }
+            context.release();
+        }
+    }
+
+    private void relaxCrossings(SearchContext context, int cell, int[] crossings, int side, int to, int bestExitCost) {
+        if (crossings == null) {
+            return;
+        }
+        for (int i = side; i < crossings.length; i += 2) {
+            if (crossings[i] == cell) {
+                relax(context, cell, crossings[i ^ 1], 1, STEP, to, bestExitCost);
+            }
+        }
+    }
+
+    private void relax(SearchContext context, int parent, int cell, int cost, byte arrival, int to, int bestExitCost) {
+        if (cost == UNREACHABLE || cell == parent) {
+            return;
+        }
+        float g = context.g(parent) + cost;
+        if (g < context.g(cell)) {
+            context.reach(cell, g, parent);
+            context.arrival[cell] = arrival;
+            context.open.push(cell, g + graph.heuristic(cell, to, bestExitCost));
+        }
+    }
+
+    /**
+     * Turns the abstract path into squares, searching each walk again inside its cluster.
+     */
+    private int[] refine(SearchContext context, int from, int to) {
+        int nodes = 0;
+        for (int cell = to; cell != from; cell = context.parent[cell]) {
+            nodes++;
+        }
+        int[] abstractPath = new int[nodes + 1];
+        abstractPath[0] = from;
+        for (int cell = to, i = nodes; cell != from; cell = context.parent[cell]) {
+            abstractPath[i--] = cell;
+        }
+
+        int[] path = new int[(int) context.g(to)];
+        int length = 0;
+        for (int i = 1; i < abstractPath.length; i++) {
+            int cell = abstractPath[i];
+            if (context.arrival[cell] == STEP) {
+                path[length++] = cell;
+                continue;
+            }
+            Cluster cluster = clusters[clusterOf(cell)];
+            int clusterWidth = cluster.x1 - cluster.x0;
+            int[] parents = new int[clusterWidth * (cluster.y1 - cluster.y0)];
+            int[] distances = distancesInCluster(cluster, abstractPath[i - 1], parents);
+            int local = cluster.local(cell, width);
+            int steps = distances[local];
+            for (int square = length + steps - 1; square >= length; square--) {
+                path[square] = (cluster.y0 + local / clusterWidth) * width + cluster.x0 + local % clusterWidth;
+                local = parents[local];
+            }
+            length += steps;
+        }
+        return path;
+    }
+
+    private int clusterOf(int cell) {
+        return (cell / width / clusterSize) * clustersX + (cell % width) / clusterSize;
+    }
+
+    private static final class Cluster {
+        /** Bounds of the cluster, upper ones excluded */
+        private final int x0;
+        private final int y0;
+        private final int x1;
+        private final int y1;
+        private int[] entrances = new int[0];
+        /** Distance between each pair of entrances, entrances.length squared values */
+        private int[] distances = new int[0];
+        private boolean bordersDirty = true;
+        private boolean distancesDirty = true;
+
+        private Cluster(int x0, int y0, int x1, int y1) {
+            this.x0 = x0;
+            this.y0 = y0;
+            this.x1 = x1;
+            this.y1 = y1;
+        }
+
+        private int local(int cell, int width) {
+            return (cell / width - y0) * (x1 - x0) + cell % width - x0;
+        }
+
+        private int indexOf(int cell) {
+            for (int i = 0; i < entrances.length; i++) {
+                if (entrances[i] == cell) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package ca.onepoint.yul.pathfinding;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps the {@link HierarchicalGraph} of each map and kind of object. A hierarchy follows the new
+ * versions of its map by itself, so that only the clusters which changed are rebuilt.
+ */
+@Component
+public class HierarchicalGraphCache {
+
+    @Value("${yul.path-finding.hpa.cluster-size:16}")
+    private int clusterSize;
+
+    private final ConcurrentHashMap<Long, HierarchicalGraph> pedestrianGraphs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, HierarchicalGraph> vehicleGraphs = new ConcurrentHashMap<>();
+
+    public HierarchicalGraph get(MapGraph graph, int objectType) {
+        ConcurrentHashMap<Long, HierarchicalGraph> graphs = MapGraphCache.isPedestrian(objectType) ? pedestrianGraphs : vehicleGraphs;
+        return graphs.computeIfAbsent(graph.getGrid().getId(), id -> new HierarchicalGraph(clusterSize));
+    }
+}
@@ -0,0 +1,110 @@
+package ca.onepoint.yul.pathfinding;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of cells ordered by a float key, with O(log n) decrease-key.
+ * The arrays are reused between searches : clear() is O(1) thanks to a generation stamp.
+ */
+final class IndexedMinHeap {
+
+    private int[] heap = new int[0];
+    private int[] position = new int[0];
+    private int[] stamp = new int[0];
+    private float[] keys = new float[0];
+    private int size;
+    private int generation;
+
+    void clear(int cells) {
+        if (position.length < cells) {
+            heap = new int[cells];
+            position = new int[cells];
+            stamp = new int[cells];
+            keys = new float[cells];
+            generation = 0;
+        }
+        size = 0;
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(int cell) {
+        return stamp[cell] == generation && position[cell] >= 0;
+    }
+
+    /**
+     * Inserts the cell, or lowers its key if it is already queued with a higher one.
+     */
+    void push(int cell, float key) {
+        if (stamp[cell] == generation && position[cell] >= 0) {
+            if (key < keys[cell]) {
+                keys[cell] = key;
+                siftUp(position[cell]);
+            }
+            return;
+        }
+        stamp[cell] = generation;
+        keys[cell] = key;
+        heap[size] = cell;
+        position[cell] = size;
+        siftUp(size++);
+    }
+
+    int pop() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            position[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    private void siftUp(int index) {
+        int cell = heap[index];
+        float key = keys[cell];
+        while (index > 0) {
+            int parentIndex = (index - 1) >>> 1;
+            int parent = heap[parentIndex];
+            if (keys[parent] <= key) {
+                break;
+            }
+            heap[index] = parent;
+            position[parent] = index;
+            index = parentIndex;
+        }
+        heap[index] = cell;
+        position[cell] = index;
+    }
+
+    private void siftDown(int index) {
+        int cell = heap[index];
+        float key = keys[cell];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (keys[heap[child]] >= key) {
+                break;
+            }
+            heap[index] = heap[child];
+            position[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = cell;
+        position[cell] = index;
+    }
+}
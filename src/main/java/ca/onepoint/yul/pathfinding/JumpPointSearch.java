@@ -0,0 +1,195 @@
+package ca.onepoint.yul.pathfinding;
+
+/**
+ * Jump Point Search for the 4-connected, uniform cost grid, see
+ * https://en.wikipedia.org/wiki/Jump_point_search
+ * Among paths of the same length only the canonical one is kept : horizontal moves may turn
+ * vertical anywhere, vertical moves only turn horizontal where a wall forces it. A* then only
+ * queues the jump points where a canonical path can turn, instead of every cell.
+ * Teleport link sources are jump points too, their targets are expanded in every direction.
+ */
+public final class JumpPointSearch {
+
+    private static final byte ANY = 0;
+    private static final byte EAST = 1;
+    private static final byte WEST = 2;
+    private static final byte SOUTH = 3;
+    private static final byte NORTH = 4;
+
+    private final MapGraph graph;
+    private final CellSet blocked;
+    private final int width;
+    private final int height;
+    private final int to;
+
+    private JumpPointSearch(MapGraph graph, CellSet blocked, int to) {
+        this.graph = graph;
+        this.blocked = blocked;
+        this.width = graph.getWidth();
+        this.height = graph.getHeight();
+        this.to = to;
+    }
+
+    public static int[] findPath(MapGraph graph, CellSet blocked, int from, int to) {
+        return findPath(graph, blocked, from, to, null);
+    }
+
+    /**
+     * @param stats counters to update, may be null
+     * @return the cells from the one after the start to the target, or null when unreachable
+     */
+    public static int[] findPath(MapGraph graph, CellSet blocked, int from, int to, SearchStats stats) {
+        SearchContext context = SearchContext.acquire(graph.size());
+        try {
+            return new JumpPointSearch(graph, blocked, to).search(context, from);
+        } finally {
+            if (stats != null) {
+                stats.record(context.expanded);
+            }
+            context.release();
+        }
+    }
+
+    private int[] search(SearchContext context, int from) {
+        IndexedMinHeap open = context.open;
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int bestExitCost = graph.bestExitCost(to);
+
+        context.reach(from, 0, from);
+        context.arrival[from] = ANY;
+        open.push(from, graph.heuristic(from, to, bestExitCost));
+        while (!open.isEmpty()) {
+            int current = open.pop();
+            if (current == to) {
+                return path(context, from);
+            }
+            context.expanded++;
+            byte arrival = context.arrival[current];
+            int x = current % width;
+            int y = current / width;
+
+            if (arrival == ANY || arrival == EAST || arrival == WEST) {
+                if (arrival != WEST) {
+                    push(context, current, jumpHorizontal(x, y, 1), EAST, bestExitCost);
+                }
+                if (arrival != EAST) {
+                    push(context, current, jumpHorizontal(x, y, -1), WEST, bestExitCost);
+                }
+                push(context, current, jumpVertical(x, y, 1), SOUTH, bestExitCost);
+                push(context, current, jumpVertical(x, y, -1), NORTH, bestExitCost);
+            } else {
+                int dy = arrival == SOUTH ? 1 : -1;
+                push(context, current, jumpVertical(x, y, dy), arrival, bestExitCost);
+                // A vertical move only turns where the way through the previous row is walled
+                if (free(x + 1, y) && !free(x + 1, y - dy)) {
+                    push(context, current, jumpHorizontal(x, y, 1), EAST, bestExitCost);
+                }
+                if (free(x - 1, y) && !free(x - 1, y - dy)) {
+                    push(context, current, jumpHorizontal(x, y, -1), WEST, bestExitCost);
+                }
+            }
+
+            for (int edge = graph.firstLinkEdge(current), end = offsets[current + 1]; edge < end; edge++) {
+                if (!blocked.contains(targets[edge])) {
+                    push(context, current, targets[edge], ANY, bestExitCost);
+                }
+            }
+        }
+        return null;
+    }
+
+    private void push(SearchContext context, int parent, int cell, byte arrival, int bestExitCost) {
+        if (cell < 0) {
+            return;
+        }
+        // A teleport costs 1, a jump the number of squares it goes over
+        float cost = arrival == ANY ? 1 : Math.abs(cell % width - parent % width) + Math.abs(cell / width - parent / width);
+        float g = context.g(parent) + cost;
+        if (g < context.g(cell)) {
+            context.reach(cell, g, parent);
+            context.arrival[cell] = arrival;
+            context.open.push(cell, g + graph.heuristic(cell, to, bestExitCost));
+        }
+    }
+
+    /**
+     * @return the first jump point going horizontally from (x, y), or -1
+     */
+    private int jumpHorizontal(int x, int y, int dx) {
+        while (true) {
+            x += dx;
+            if (!free(x, y)) {
+                return -1;
+            }
+            int cell = y * width + x;
+            if (cell == to || graph.hasLinks(cell)) {
+                return cell;
+            }
+            // Horizontal moves may turn vertical anywhere : stop where a vertical jump finds something
+            if (jumpVertical(x, y, 1) >= 0 || jumpVertical(x, y, -1) >= 0) {
+                return cell;
+            }
+        }
+    }
+
+    /**
+     * @return the first jump point going vertically from (x, y), or -1
+     */
+    private int jumpVertical(int x, int y, int dy) {
+        while (true) {
+            y += dy;
+            if (!free(x, y)) {
+                return -1;
+            }
+            int cell = y * width + x;
+            if (cell == to || graph.hasLinks(cell)) {
+                return cell;
+            }
+            if ((free(x + 1, y) && !free(x + 1, y - dy)) || (free(x - 1, y) && !free(x - 1, y - dy))) {
+                return cell;
+            }
+        }
+    }
+
+    private boolean free(int x, int y) {
+        return x >= 0 && y >= 0 && x < width && y < height && graph.isFree(y * width + x, blocked);
+    }
+
+    /**
+     * Walks the jump points back from the target and fills the squares between them.
+     */
+    private int[] path(SearchContext context, int from) {
+        int[] parent = context.parent;
+        byte[] arrival = context.arrival;
+        int length = 0;
+        for (int cell = to; cell != from; cell = parent[cell]) {
+            length += arrival[cell] == ANY ? 1 : Math.abs(cell % width - parent[cell] % width) + Math.abs(cell / width - parent[cell] / width);
+        }
+        int[] path = new int[length];
+        for (int cell = to; cell != from; cell = parent[cell]) {
+            if (arrival[cell] == ANY) {
+                path[--length] = cell;
+                continue;
+            }
+            int step;
+            switch (arrival[cell]) {
+                case EAST:
+                    step = 1;
+                    break;
+                case WEST:
+                    step = -1;
+                    break;
+                case SOUTH:
+                    step = width;
+                    break;
+                default:
+                    step = -width;
+            }
+            for (int square = cell; square != parent[cell]; square -= step) {
+                path[--length] = square;
+            }
+        }
+        return path;
+    }
+}
@@ -0,0 +1,260 @@
+package ca.onepoint.yul.pathfinding;
+
+import ca.onepoint.yul.grid.MapGrid;
+
+/**
+ * Walkable cells of a map for one kind of object, plus its teleport links.
+ * Built once per map version and shared read-only by every search.
+ * The moves are compiled into a compressed sparse row adjacency : the edges leaving a cell are
+ * targets[offsets[cell]] to targets[offsets[cell + 1] - 1], its walkable neighbours in the
+ * 4 directions first, then the targets of its teleport links. Every edge is one move.
+ */
+public final class MapGraph {
+
+    private static final byte WALKABLE = 1;
+    private static final byte LINKED = 2;
+    private static final byte LINK_TARGET = 4;
+    // Number of walkable neighbours in the 4 directions, in the bits above the flags
+    private static final int GRID_DEGREE_SHIFT = 3;
+
+    private final MapGrid grid;
+    private final int width;
+    private final int height;
+    private final byte[] cells;
+    private final int[] linkFrom;
+    private final int[] linkTo;
+    private final int[] offsets;
+    private final int[] targets;
+
+    /**
+     * @param linkFrom source cell of each teleport link
+     * @param linkTo   target cell of each teleport link, same length as linkFrom
+     */
+    public MapGraph(MapGrid grid, int[] linkFrom, int[] linkTo) {
+        this.grid = grid;
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.cells = new byte[width * height];
+        this.linkFrom = linkFrom;
+        this.linkTo = linkTo;
+        byte[] values = grid.getValues();
+        for (int cell = 0; cell < cells.length; cell++) {
+            // 1 is a road, 3 a shop or company, 4 the finish
+            int value = values[cell];
+            if (value == 1 || value == 3 || value == 4) {
+                cells[cell] = WALKABLE;
+            }
+        }
+        for (int from : linkFrom) {
+            cells[from] |= LINKED;
+        }
+        for (int to : linkTo) {
+            cells[to] |= LINK_TARGET;
+        }
+        this.offsets = new int[cells.length + 1];
+        this.targets = compile();
+    }
+
+    /**
+     * Counts the edges of each cell into the offsets, then writes them.
+     */
+    private int[] compile() {
+        int[] buffer = new int[4];
+        long edges = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            int degree = 0;
+            int count = gridNeighbours(cell, buffer);
+            for (int i = 0; i < count; i++) {
+                if ((cells[buffer[i]] & WALKABLE) != 0) {
+                    degree++;
+                }
+            }
+            cells[cell] |= degree << GRID_DEGREE_SHIFT;
+            offsets[cell] = (int) edges;
+            edges += degree;
+        }
+        for (int link = 0; link < linkFrom.length; link++) {
+            if ((cells[linkTo[link]] & WALKABLE) != 0) {
+                edges++;
+            }
+        }
+        if (edges > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Map " + grid.getId() + " has too many moves : " + edges);
+        }
+        // The link edges are counted apart, shift the offsets to make room for them
+        int[] linkDegrees = new int[cells.length];
+        for (int link = 0; link < linkFrom.length; link++) {
+            if ((cells[linkTo[link]] & WALKABLE) != 0) {
+                linkDegrees[linkFrom[link]]++;
+            }
+        }
+        int shift = 0;
+        for (int cell = 0; cell < cells.length; cell++) {
+            offsets[cell] += shift;
+            shift += linkDegrees[cell];
+        }
+        offsets[cells.length] = (int) edges;
+
+        int[] targets = new int[(int) edges];
+        for (int cell = 0; cell < cells.length; cell++) {
+            int edge = offsets[cell];
+            int count = gridNeighbours(cell, buffer);
+            for (int i = 0; i < count; i++) {
+                if ((cells[buffer[i]] & WALKABLE) != 0) {
+                    targets[edge++] = buffer[i];
+                }
+            }
+        }
+        for (int link = 0; link < linkFrom.length; link++) {
+            int from = linkFrom[link];
+            if ((cells[linkTo[link]] & WALKABLE) != 0) {
+                // After the grid neighbours, in link order
+                targets[offsets[from + 1] - linkDegrees[from]--] = linkTo[link];
+            }
+        }
+        return targets;
+    }
+
+    public MapGrid getGrid() {
+        return grid;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int size() {
+        return cells.length;
+    }
+
+    public boolean isWalkable(int cell) {
+        return (cells[cell] & WALKABLE) != 0;
+    }
+
+    public boolean isFree(int cell, CellSet blocked) {
+        return (cells[cell] & WALKABLE) != 0 && !blocked.contains(cell);
+    }
+
+    public boolean hasLinks(int cell) {
+        return (cells[cell] & LINKED) != 0;
+    }
+
+    public int getLinkCount() {
+        return linkFrom.length;
+    }
+
+    public int getLinkFrom(int link) {
+        return linkFrom[link];
+    }
+
+    public int getLinkTo(int link) {
+        return linkTo[link];
+    }
+
+    /**
+     * First edge of each cell, plus the number of edges at the end : the edges of a cell are
+     * offsets[cell] to offsets[cell + 1] - 1. Shared, must never be modified.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Target cell of each edge, always walkable but maybe blocked. Shared, must never be modified.
+     */
+    public int[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * @return the first edge of the cell which is a teleport link, the end of its edges when it has none
+     */
+    public int firstLinkEdge(int cell) {
+        return offsets[cell] + (cells[cell] >>> GRID_DEGREE_SHIFT);
+    }
+
+    private int gridNeighbours(int cell, int[] buffer) {
+        int x = cell % width;
+        int y = cell / width;
+        int count = 0;
+        if (y > 0) {
+            buffer[count++] = cell - width;
+        }
+        if (x < width - 1) {
+            buffer[count++] = cell + 1;
+        }
+        if (y < height - 1) {
+            buffer[count++] = cell + width;
+        }
+        if (x > 0) {
+            buffer[count++] = cell - 1;
+        }
+        return count;
+    }
+
+    /**
+     * Writes the cells having this one as neighbour into the buffer : the 4 directions, walls included,
+     * then the sources of the teleport links leading here. The buffer must hold {@link #maxDegree()} cells.
+     * Only the distance fields go backwards, once per field : these are not compiled.
+     *
+     * @return the number of cells written
+     */
+    public int predecessors(int cell, int[] buffer) {
+        int count = gridNeighbours(cell, buffer);
+        if ((cells[cell] & LINK_TARGET) != 0) {
+            for (int link = 0; link < linkTo.length; link++) {
+                if (linkTo[link] == cell) {
+                    buffer[count++] = linkFrom[link];
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Upper bound of the number of neighbours of a cell, to size the neighbour buffers.
+     */
+    public int maxDegree() {
+        return 4 + linkFrom.length;
+    }
+
+    /**
+     * Lower bound of the distance between two cells, taking the teleport links into account.
+     */
+    public float heuristic(int cell, int to, int bestExitCost) {
+        int x = cell % width;
+        int y = cell / width;
+        int direct = Math.abs(x - to % width) + Math.abs(y - to / width);
+        if (bestExitCost >= direct) {
+            return direct;
+        }
+        int bestEntry = direct;
+        for (int link = 0; link < linkFrom.length; link++) {
+            int from = linkFrom[link];
+            int entry = Math.abs(x - from % width) + Math.abs(y - from / width);
+            if (entry < bestEntry) {
+                bestEntry = entry;
+            }
+        }
+        return Math.min(direct, bestEntry + bestExitCost);
+    }
+
+    /**
+     * Cost of leaving the last teleport link towards the target : 1 for the jump plus the
+     * distance from the closest link exit. Integer.MAX_VALUE when the graph has no link.
+     */
+    public int bestExitCost(int to) {
+        int best = Integer.MAX_VALUE;
+        int toX = to % width;
+        int toY = to / width;
+        for (int link = 0; link < linkTo.length; link++) {
+            int exit = linkTo[link];
+            best = Math.min(best, 1 + Math.abs(toX - exit % width) + Math.abs(toY - exit / width));
+        }
+        return best;
+    }
+}
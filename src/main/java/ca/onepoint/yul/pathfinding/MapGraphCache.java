@@ -0,0 +1,98 @@
+package ca.onepoint.yul.pathfinding;
+
+import ca.onepoint.yul.entity.TransitLink;
+import ca.onepoint.yul.grid.MapGrid;
+import ca.onepoint.yul.repository.TransitLinkRepository;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of the {@link MapGraph} of each map and kind of object, with the transit links of the map
+ * read from the transit_link table. A graph is immutable : a new version of a map, or an edited link,
+ * gives a new graph swapped in for the next searches while the running ones go on with the one they have.
+ * Maps are built and searched independently of each other.
+ */
+@Component
+public class MapGraphCache {
+
+    @Resource
+    private DistanceFieldCache distanceFieldCache;
+
+    @Resource
+    private TransitLinkRepository transitLinkRepository;
+
+    private final ConcurrentHashMap<Long, MapGraph> pedestrianGraphs = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, MapGraph> vehicleGraphs = new ConcurrentHashMap<>();
+
+    // Bumped on every eviction so that a graph built with links edited in between is not published
+    private final AtomicLong generation = new AtomicLong();
+
+    public MapGraph get(MapGrid grid, int objectType) {
+        boolean pedestrian = isPedestrian(objectType);
+        ConcurrentHashMap<Long, MapGraph> graphs = pedestrian ? pedestrianGraphs : vehicleGraphs;
+        MapGraph graph = graphs.get(grid.getId());
+        if (graph != null && graph.getGrid() == grid) {
+            return graph;
+        }
+        long loadGeneration = generation.get();
+        // Built outside of the registry : the searches on the other maps, and on this one, are not held
+        MapGraph built = pedestrian ? buildPedestrianGraph(grid) : new MapGraph(grid, new int[0], new int[0]);
+        MapGraph[] replaced = new MapGraph[1];
+        MapGraph published = graphs.compute(grid.getId(), (id, current) -> {
+            if (generation.get() != loadGeneration
+                    || (current != null && (current.getGrid() == grid || current.getGrid().getVersion() > grid.getVersion()))) {
+                return current;
+            }
+            replaced[0] = current;
+            return built;
+        });
+        if (replaced[0] != null) {
+            distanceFieldCache.evict(replaced[0]);
+        }
+        // A graph of the same grid built by another thread, or this one, published or not
+        return published != null && published.getGrid() == grid ? published : built;
+    }
+
+    /**
+     * Drops the graphs of every map, rebuilt with the links of the table on their next search.
+     */
+    public void evictAll() {
+        generation.incrementAndGet();
+        for (ConcurrentHashMap<Long, MapGraph> graphs : List.of(pedestrianGraphs, vehicleGraphs)) {
+            for (Long id : new ArrayList<>(graphs.keySet())) {
+                MapGraph removed = graphs.remove(id);
+                if (removed != null) {
+                    distanceFieldCache.evict(removed);
+                }
+            }
+        }
+    }
+
+    /**
+     * Only persons can take the subway, cars can't...
+     */
+    public static boolean isPedestrian(int objectType) {
+        return objectType == 0;
+    }
+
+    private MapGraph buildPedestrianGraph(MapGrid grid) {
+        List<TransitLink> links = transitLinkRepository.findByMapIdOrderById(grid.getId().intValue());
+        int[] linkFrom = new int[links.size()];
+        int[] linkTo = new int[links.size()];
+        int link = 0;
+        for (TransitLink transitLink : links) {
+            // Links out of the map are left aside, the map may have been resized since
+            if (grid.contains(transitLink.getFromX(), transitLink.getFromY()) && grid.contains(transitLink.getToX(), transitLink.getToY())) {
+                linkFrom[link] = grid.index(transitLink.getFromX(), transitLink.getFromY());
+                linkTo[link++] = grid.index(transitLink.getToX(), transitLink.getToY());
+            }
+        }
+        return new MapGraph(grid, Arrays.copyOf(linkFrom, link), Arrays.copyOf(linkTo, link));
+    }
+}
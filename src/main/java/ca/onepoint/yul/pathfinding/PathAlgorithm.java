@@ -0,0 +1,14 @@
+package ca.onepoint.yul.pathfinding;
+
+/**
+ * Search algorithms a path request can ask for. They all return shortest paths, but HPA
+ * which trades a few squares for much faster searches on large maps.
+ */
+public enum PathAlgorithm {
+    /** Plain A* over every cell */
+    ASTAR,
+    /** Jump Point Search : A* skipping the symmetric paths of the open areas */
+    JPS,
+    /** Hierarchical A* over clusters of the map, near optimal */
+    HPA
+}
@@ -0,0 +1,337 @@
+package ca.onepoint.yul.pathfinding;
+
+import ca.onepoint.yul.grid.MapGrid;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.IntStream;
+
+/**
+ * Results of the path requests, in LRU order within a budget of path squares.
+ * A route is keyed by its graph, so by map version and kind of object, its algorithm and its ends.
+ * The cache follows the avatars of each map : the changes of the blocked cells are logged by
+ * occupancy version, and a route is checked against the changes made since its last check when it
+ * is asked for, so a move costs nothing to the routes nobody asks for. A newly blocked cell drops
+ * the paths going through it. A freed cell drops the routes it could shorten, the ones whose ends
+ * are close enough to it, and the routes found unreachable. Routes older than the log are dropped.
+ */
+@Component
+public class PathCache {
+
+    @Value("${yul.path-finding.path-cache.max-squares:4000000}")
+    private long maxSquares;
+
+    /** Changes of the blocked cells kept per map */
+    private static final int MAX_CHANGES = 256;
+
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final HashMap<Long, Occupancy> occupancies = new HashMap<>();
+    private long squares;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    /**
+     * Brings the cache up to date with the grid and the avatars of a map. The routes are not looked at,
+     * the changed cells are logged for {@link #get}. A snapshot older than the last one synced is ignored.
+     *
+     * @param occupancyVersion version of the blocked cells, a greater one for a later state of the avatars
+     */
+    public void sync(MapGrid grid, CellSet blocked, long occupancyVersion) {
+        synchronized (entries) {
+            Occupancy occupancy = occupancies.get(grid.getId());
+            if (occupancy == null || occupancy.grid != grid) {
+                if (occupancy != null) {
+                    removeIf(entry -> entry.graph.getGrid().getId().equals(grid.getId()), false);
+                }
+                occupancy = new Occupancy(grid, new CellSet(blocked.size()));
+                occupancies.put(grid.getId(), occupancy);
+            }
+            if (occupancyVersion <= occupancy.version) {
+                return;
+            }
+            IntStream.Builder added = IntStream.builder();
+            IntStream.Builder freed = IntStream.builder();
+            occupancy.blocked.syncWith(blocked, cell -> (blocked.contains(cell) ? added : freed).add(cell));
+            // No route of the map yet on the first sync, nothing to log
+            if (occupancy.version >= 0) {
+                occupancy.changes.addLast(new Change(occupancy.version, added.build().toArray(), freed.build().toArray()));
+                if (occupancy.changes.size() > MAX_CHANGES) {
+                    occupancy.changes.removeFirst();
+                }
+            }
+            occupancy.version = occupancyVersion;
+        }
+    }
+
+    /**
+     * @return the cached route, or null when it has to be searched
+     */
+    public Entry get(MapGraph graph, PathAlgorithm algorithm, int from, int to) {
+        synchronized (entries) {
+            Key key = new Key(graph, algorithm, from, to);
+            Entry entry = entries.get(key);
+            if (entry != null && !isValid(entry)) {
+                entries.remove(key);
+                squares -= entry.weight();
+                invalidations++;
+                entry = null;
+            }
+            if (entry == null) {
+                misses++;
+            } else {
+                hits++;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Checks a route against the changes of the blocked cells since its last check.
+     */
+    private boolean isValid(Entry entry) {
+        Occupancy occupancy = occupancies.get(entry.graph.getGrid().getId());
+        if (occupancy == null || occupancy.grid != entry.graph.getGrid()) {
+            return false;
+        }
+        if (entry.checkedVersion == occupancy.version) {
+            return true;
+        }
+        if (occupancy.changes.isEmpty() || occupancy.changes.peekFirst().since > entry.checkedVersion) {
+            return false;
+        }
+        for (Change change : occupancy.changes) {
+            if (change.since >= entry.checkedVersion && entry.isAffected(change.added, change.freed)) {
+                return false;
+            }
+        }
+        entry.checkedVersion = occupancy.version;
+        return true;
+    }
+
+    /**
+     * Keeps a route, unless the avatars moved since the snapshot it was searched on.
+     *
+     * @param path             the route found, null when unreachable
+     * @param occupancyVersion the version of the snapshot, as given to {@link #sync}
+     */
+    public void put(MapGraph graph, PathAlgorithm algorithm, int from, int to, int[] path, long occupancyVersion) {
+        synchronized (entries) {
+            Occupancy occupancy = occupancies.get(graph.getGrid().getId());
+            if (maxSquares <= 0 || occupancy == null || occupancy.grid != graph.getGrid() || occupancy.version != occupancyVersion) {
+                return;
+            }
+            Entry entry = new Entry(graph, from, to, path, occupancyVersion);
+            Entry previous = entries.put(new Key(graph, algorithm, from, to), entry);
+            if (previous != null) {
+                squares -= previous.weight();
+            }
+            squares += entry.weight();
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (squares > maxSquares && entries.size() > 1) {
+                squares -= eldest.next().weight();
+                eldest.remove();
+                evictions++;
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            occupancies.clear();
+            squares = 0;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getHits() {
+        synchronized (entries) {
+            return hits;
+        }
+    }
+
+    public long getMisses() {
+        synchronized (entries) {
+            return misses;
+        }
+    }
+
+    /**
+     * Routes dropped to stay within the budget.
+     */
+    public long getEvictions() {
+        synchronized (entries) {
+            return evictions;
+        }
+    }
+
+    /**
+     * Routes dropped because an avatar moved on or next to them, or older than the changes kept.
+     */
+    public long getInvalidations() {
+        synchronized (entries) {
+            return invalidations;
+        }
+    }
+
+    private void removeIf(Predicate<Entry> condition, boolean invalidated) {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (condition.test(entry)) {
+                squares -= entry.weight();
+                iterator.remove();
+                if (invalidated) {
+                    invalidations++;
+                }
+            }
+        }
+    }
+
+    public static final class Entry {
+        private final MapGraph graph;
+        private final int from;
+        private final int to;
+        private final int[] path;
+        /** Occupancy version the route is known to be valid at */
+        private long checkedVersion;
+        /** Bounding box of the path, to skip most of the blocked cells without looking at the path */
+        private int minX = Integer.MAX_VALUE;
+        private int minY = Integer.MAX_VALUE;
+        private int maxX = -1;
+        private int maxY = -1;
+
+        private Entry(MapGraph graph, int from, int to, int[] path, long checkedVersion) {
+            this.graph = graph;
+            this.from = from;
+            this.to = to;
+            this.path = path;
+            this.checkedVersion = checkedVersion;
+            if (path != null) {
+                int width = graph.getWidth();
+                for (int cell : path) {
+                    minX = Math.min(minX, cell % width);
+                    maxX = Math.max(maxX, cell % width);
+                    minY = Math.min(minY, cell / width);
+                    maxY = Math.max(maxY, cell / width);
+                }
+            }
+        }
+
+        /**
+         * @return the cells from the one after the start to the target, null when unreachable
+         */
+        public int[] getPath() {
+            return path;
+        }
+
+        private long weight() {
+            return path == null ? 1 : Math.max(1, path.length);
+        }
+
+        private boolean isAffected(int[] added, int[] freed) {
+            if (path == null) {
+                // A freed cell may open the way
+                return freed.length > 0;
+            }
+            for (int cell : added) {
+                if (passesThrough(cell)) {
+                    return true;
+                }
+            }
+            int toExitCost = graph.bestExitCost(to);
+            for (int cell : freed) {
+                // A path through the freed cell is at least that long, no shorter path when it is not shorter
+                float shortest = graph.heuristic(from, cell, graph.bestExitCost(cell)) + graph.heuristic(cell, to, toExitCost);
+                if (shortest < path.length) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean passesThrough(int cell) {
+            int x = cell % graph.getWidth();
+            int y = cell / graph.getWidth();
+            if (x < minX || x > maxX || y < minY || y > maxY) {
+                return false;
+            }
+            for (int square : path) {
+                if (square == cell) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Blocked cells of a map as last seen by the cache, with the latest changes.
+     */
+    private static final class Occupancy {
+        private final MapGrid grid;
+        private final CellSet blocked;
+        private final ArrayDeque<Change> changes = new ArrayDeque<>();
+        private long version = -1;
+
+        private Occupancy(MapGrid grid, CellSet blocked) {
+            this.grid = grid;
+            this.blocked = blocked;
+        }
+    }
+
+    /**
+     * Cells blocked and freed between an occupancy version and the next one synced.
+     */
+    private static final class Change {
+        private final long since;
+        private final int[] added;
+        private final int[] freed;
+
+        private Change(long since, int[] added, int[] freed) {
+            this.since = since;
+            this.added = added;
+            this.freed = freed;
+        }
+    }
+
+    private static final class Key {
+        private final MapGraph graph;
+        private final PathAlgorithm algorithm;
+        private final int from;
+        private final int to;
+
+        private Key(MapGraph graph, PathAlgorithm algorithm, int from, int to) {
+            this.graph = graph;
+            this.algorithm = algorithm;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return graph == key.graph && algorithm == key.algorithm && from == key.from && to == key.to;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(graph), algorithm, from, to);
+        }
+    }
+}
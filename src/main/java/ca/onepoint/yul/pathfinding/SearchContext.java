@@ -0,0 +1,93 @@
+package ca.onepoint.yul.pathfinding;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scratch arrays of a search, grown to the largest map and reused afterwards
+ * so that a search allocates nothing but its result.
+ * Contexts are pooled rather than kept per thread : on a large map they weigh tens of megabytes,
+ * so there must be about as many as concurrent searches, not as many as web server threads.
+ */
+final class SearchContext {
+
+    private static final int MAX_POOLED = 2 * Runtime.getRuntime().availableProcessors();
+    private static final ConcurrentLinkedQueue<SearchContext> POOL = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED = new AtomicInteger();
+
+    final IndexedMinHeap open = new IndexedMinHeap();
+    float[] gScore = new float[0];
+    int[] parent = new int[0];
+    byte[] arrival = new byte[0];
+    private int[] stamp = new int[0];
+    private int generation;
+    int expanded;
+
+    /**
+     * Borrows a context sized for the graph, it must be given back with {@link #release()}.
+     */
+    static SearchContext acquire(int cells) {
+        SearchContext context = POOL.poll();
+        if (context == null) {
+            context = new SearchContext();
+        } else {
+            POOLED.decrementAndGet();
+        }
+        context.reset(cells);
+        return context;
+    }
+
+    void release() {
+        if (POOLED.incrementAndGet() <= MAX_POOLED) {
+            POOL.offer(this);
+        } else {
+            POOLED.decrementAndGet();
+        }
+    }
+
+    private void reset(int cells) {
+        if (stamp.length < cells) {
+            gScore = new float[cells];
+            parent = new int[cells];
+            arrival = new byte[cells];
+            stamp = new int[cells];
+            generation = 0;
+        }
+        open.clear(cells);
+        expanded = 0;
+        generation++;
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+    }
+
+    /**
+     * Best known cost to reach the cell during this search, infinity when not reached yet.
+     */
+    float g(int cell) {
+        return stamp[cell] == generation ? gScore[cell] : Float.POSITIVE_INFINITY;
+    }
+
+    void reach(int cell, float g, int from) {
+        stamp[cell] = generation;
+        gScore[cell] = g;
+        parent[cell] = from;
+    }
+
+    /**
+     * Walks the parents back from the target, the start cell is not part of the path.
+     */
+    int[] path(int from, int to) {
+        int length = 0;
+        for (int cell = to; cell != from; cell = parent[cell]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int cell = to; cell != from; cell = parent[cell]) {
+            path[--length] = cell;
+        }
+        return path;
+    }
+}
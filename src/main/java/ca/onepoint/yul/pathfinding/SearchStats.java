@@ -0,0 +1,26 @@
+package ca.onepoint.yul.pathfinding;
+
+/**
+ * Counters of the searches it is passed to, for benchmarks and metrics. Not thread-safe.
+ */
+public final class SearchStats {
+
+    private long searches;
+    private long expanded;
+
+    void record(int expandedNodes) {
+        searches++;
+        expanded += expandedNodes;
+    }
+
+    public long getSearches() {
+        return searches;
+    }
+
+    /**
+     * Nodes taken out of the open set, summed over the searches.
+     */
+    public long getExpanded() {
+        return expanded;
+    }
+}
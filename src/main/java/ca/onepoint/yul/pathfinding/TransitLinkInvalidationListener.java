@@ -0,0 +1,38 @@
+package ca.onepoint.yul.pathfinding;
+
+import ca.onepoint.yul.entity.TransitLink;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.PostPersist;
+import javax.persistence.PostRemove;
+import javax.persistence.PostUpdate;
+
+/**
+ * JPA listener dropping the graphs built with the transit links when one of them is written, once committed.
+ * A link may have moved from a map to another one : all the graphs are dropped, links are rarely edited.
+ */
+public class TransitLinkInvalidationListener {
+
+    // Lazy lookup : the listener is created with the EntityManagerFactory, before the repositories
+    @Autowired
+    private ObjectProvider<MapGraphCache> mapGraphCache;
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onTransitLinkChanged(TransitLink link) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    mapGraphCache.getObject().evictAll();
+                }
+            });
+        } else {
+            mapGraphCache.getObject().evictAll();
+        }
+    }
+}
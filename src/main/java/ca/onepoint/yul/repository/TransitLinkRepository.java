@@ -0,0 +1,14 @@
+package ca.onepoint.yul.repository;
+
+import ca.onepoint.yul.entity.TransitLink;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TransitLinkRepository extends CrudRepository<TransitLink, Long> {
+
+    List<TransitLink> findByMapIdOrderById(Integer mapId);
+
+}
@@ -1,15 +1,41 @@
 package ca.onepoint.yul.repository.custom;
 
 import ca.onepoint.yul.dto.AvatarDto;
-import ca.onepoint.yul.entity.Avatar;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 @Repository
 public interface AvatarRepositoryCustom {
 
     AvatarDto findByIdAvatar(Integer id);
 
-    List<Avatar> findByType(Integer id);
+    List<AvatarDto> findByType(Integer id);
+
+    /**
+     * Page of avatars in id order, from the one after a cursor.
+     *
+     * @param type  type of the avatars, all of them when null
+     * @param after id of the last avatar of the previous page, 0 for the first page
+     * @param limit number of avatars of the page at most
+     */
+    List<AvatarDto> findPage(Integer type, int after, int limit);
+
+    /**
+     * Goes through the avatars in id order, read by chunks of fetch-size avatars : only one chunk is
+     * kept in memory, and no connection is held while the consumer runs.
+     *
+     * @param type type of the avatars, all of them when null
+     */
+    void forEachAvatar(Integer type, Consumer<AvatarDto> consumer);
+
+    /**
+     * Saves the position and the waiting state of avatars in one transaction, with batched JDBC updates.
+     * The JPA listeners are not called, the caller is the one telling where the avatars are.
+     *
+     * @param avatars id, x and y of each avatar, and its waiting state when not null
+     * @return the number of rows updated
+     */
+    int updatePositions(List<AvatarDto> avatars);
 }
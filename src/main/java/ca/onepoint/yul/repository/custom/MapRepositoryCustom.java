@@ -10,4 +10,17 @@ public interface MapRepositoryCustom {
 
     Map findByIdMap(Long id);
     List<Map> findAllMap();
+
+    /**
+     * @return the id of the first map of {@link #findAllMap()}, null when there is no map
+     */
+    Long findFirstMapId();
+
+    /**
+     * Replaces the JSON column of a map by its binary grid, if the map is still at the given version.
+     * The JPA listeners are not called, the caller evicts the map from the caches.
+     *
+     * @return the number of rows updated, 0 when the map has changed in between
+     */
+    int updateGrid(Integer id, Integer version, byte[] grid);
 }
@@ -1,13 +1,24 @@
 package ca.onepoint.yul.repository.custom.impl;
 
 import ca.onepoint.yul.dto.AvatarDto;
-import ca.onepoint.yul.entity.Avatar;
 import ca.onepoint.yul.repository.custom.AvatarRepositoryCustom;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceContext;
-import javax.persistence.Query;
+import javax.persistence.PersistenceUnit;
+import javax.persistence.TypedQuery;
+import java.sql.PreparedStatement;
+import java.sql.Types;
 import java.util.List;
+import java.util.function.Consumer;
 
 
 public class AvatarRepositoryImpl implements AvatarRepositoryCustom {
@@ -15,50 +26,157 @@ public class AvatarRepositoryImpl implements AvatarRepositoryCustom {
     @PersistenceContext
     private EntityManager entityManager;
 
+    @PersistenceUnit
+    private EntityManagerFactory entityManagerFactory;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${yul.avatar.stream.fetch-size:500}")
+    private int streamFetchSize;
+
+    private Timer findByIdAvatarTimer;
+    private Timer findByTypeTimer;
+    private Timer findPageTimer;
+    private Timer forEachAvatarTimer;
+    private Timer updatePositionsTimer;
+
+    @PostConstruct
+    private void registerMetrics() {
+        findByIdAvatarTimer = queryTimer("findByIdAvatar");
+        findByTypeTimer = queryTimer("findByType");
+        findPageTimer = queryTimer("findPage");
+        forEachAvatarTimer = queryTimer("forEachAvatar");
+        updatePositionsTimer = queryTimer("updatePositions");
+    }
 
     @Override
     public AvatarDto findByIdAvatar(Integer id) {
-        // Construction de la requête
-        StringBuilder queryBuilder = new StringBuilder();
-        // Clause SELECT
-        queryBuilder.append("SELECT a.id, a.name, a.type, a.image, a.waiting, a.main, a.x, a.y ");
-        // Clause FROM
-        queryBuilder.append("FROM Avatar a ");
-        // Clause WHERE
-        queryBuilder.append("WHERE a.id = '" + id + "' ");
+        return findByIdAvatarTimer.record(() -> {
+            TypedQuery<AvatarDto> query = entityManager.createQuery(selectQuery("WHERE a.id = :id "), AvatarDto.class);
+            query.setParameter("id", id);
+            return query.getResultList().get(0);
+        });
+    }
+
+    @Override
+    public List<AvatarDto> findByType(Integer id) {
+        return findByTypeTimer.record(() -> {
+            TypedQuery<AvatarDto> query = entityManager.createQuery(selectQuery("WHERE a.type = :type ORDER BY a.id"), AvatarDto.class);
+            query.setParameter("type", id);
+            return query.getResultList();
+        });
+    }
 
-        Query query = entityManager.createQuery(queryBuilder.toString());
-        return mappingAvatartoDto(query.getResultList());
+    @Override
+    public List<AvatarDto> findPage(Integer type, int after, int limit) {
+        return findPageTimer.record(() -> {
+            TypedQuery<AvatarDto> query = entityManager.createQuery(pageQuery(type), AvatarDto.class);
+            query.setParameter("after", after);
+            if (type != null) {
+                query.setParameter("type", type);
+            }
+            query.setMaxResults(limit);
+            return query.getResultList();
+        });
     }
 
     @Override
-    public List<Avatar> findByType(Integer id) {
+    public void forEachAvatar(Integer type, Consumer<AvatarDto> consumer) {
+        int after = 0;
+        List<AvatarDto> chunk;
+        do {
+            chunk = findChunk(type, after);
+            // Handed out once the connection is back in the pool : a slow client holds none of them
+            chunk.forEach(consumer);
+            if (!chunk.isEmpty()) {
+                after = chunk.get(chunk.size() - 1).getId();
+            }
+        } while (chunk.size() == streamFetchSize);
+    }
+
+    /**
+     * Reads the fetch-size avatars after the id given, through an entity manager of its own : the one of
+     * the request would keep its connection until the whole response is written.
+     */
+    private List<AvatarDto> findChunk(Integer type, int after) {
+        return forEachAvatarTimer.record(() -> {
+            EntityManager chunkEntityManager = entityManagerFactory.createEntityManager();
+            try {
+                TypedQuery<AvatarDto> query = chunkEntityManager.createQuery(pageQuery(type), AvatarDto.class);
+                query.setParameter("after", after);
+                if (type != null) {
+                    query.setParameter("type", type);
+                }
+                query.setMaxResults(streamFetchSize);
+                return query.getResultList();
+            } finally {
+                chunkEntityManager.close();
+            }
+        });
+    }
+
+    @Override
+    @Transactional
+    public int updatePositions(List<AvatarDto> avatars) {
+        return updatePositionsTimer.record(() -> {
+            int[] updated = new int[1];
+            entityManager.unwrap(Session.class).doWork(connection -> {
+                try (PreparedStatement statement = connection.prepareStatement(
+                        "UPDATE avatar SET x = ?, y = ?, waiting = COALESCE(?, waiting) WHERE id = ?")) {
+                    for (AvatarDto avatar : avatars) {
+                        statement.setInt(1, avatar.getX());
+                        statement.setInt(2, avatar.getY());
+                        if (avatar.getWaiting() != null) {
+                            statement.setInt(3, avatar.getWaiting());
+                        } else {
+                            statement.setNull(3, Types.INTEGER);
+                        }
+                        statement.setInt(4, avatar.getId());
+                        statement.addBatch();
+                    }
+                    for (int count : statement.executeBatch()) {
+                        // SUCCESS_NO_INFO (-2) when the driver does not tell
+                        updated[0] += Math.max(count, 0);
+                    }
+                }
+            });
+            return updated[0];
+        });
+    }
+
+    private static String pageQuery(Integer type) {
+        // Clause WHERE, keyset on the id
+        StringBuilder clauses = new StringBuilder("WHERE a.id > :after ");
+        if (type != null) {
+            // Clause ORDER BY on the whole index (type, id) : by the id alone, H2 sorts all the avatars of the type
+            clauses.append("AND a.type = :type ORDER BY a.type, a.id");
+        } else {
+            // Clause ORDER BY
+            clauses.append("ORDER BY a.id");
+        }
+        return selectQuery(clauses.toString());
+    }
+
+    /**
+     * The values are bound as parameters, so that each query keeps the same text : Hibernate parses it
+     * once and the database reuses its plan, whatever the values.
+     */
+    private static String selectQuery(String clauses) {
         // Construction de la requête
         StringBuilder queryBuilder = new StringBuilder();
-        // Clause SELECT
-        queryBuilder.append("SELECT a.id, a.name, a.type, a.image, a.waiting, a.main, a.x, a.y ");
+        // Clause SELECT, straight into the DTO
+        queryBuilder.append("SELECT new ca.onepoint.yul.dto.AvatarDto(a.id, a.name, a.type, a.image, a.waiting, a.main, a.x, a.y) ");
         // Clause FROM
         queryBuilder.append("FROM Avatar a ");
-        // Clause WHERE
-        queryBuilder.append("WHERE a.type = '" + id + "' ");
-
-        Query query = entityManager.createNativeQuery(queryBuilder.toString(), Avatar.class);
-        return query.getResultList();
+        queryBuilder.append(clauses);
+        return queryBuilder.toString();
     }
 
-    private AvatarDto mappingAvatartoDto(List<Object[]> infos) {
-        Object[] avatar = infos.get(0);
-        AvatarDto avatarDto = new AvatarDto();
-        avatarDto.setId((Integer) avatar[0]);
-        avatarDto.setName((String) avatar[1]);
-        avatarDto.setType((Integer) avatar[2]);
-        avatarDto.setImage((String) avatar[3]);
-        avatarDto.setWaiting((Integer) avatar[4]);
-        avatarDto.setMain((Integer) avatar[5]);
-        avatarDto.setX((Integer) avatar[6]);
-        avatarDto.setY((Integer) avatar[7]);
-        return avatarDto;
+    private Timer queryTimer(String method) {
+        return Timer.builder("yul.repository.query")
+                .tags("repository", "AvatarRepository", "method", method)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
-
-
 }
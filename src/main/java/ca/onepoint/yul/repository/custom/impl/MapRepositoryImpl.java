@@ -2,10 +2,16 @@ package ca.onepoint.yul.repository.custom.impl;
 
 import ca.onepoint.yul.entity.Map;
 import ca.onepoint.yul.repository.custom.MapRepositoryCustom;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.Query;
+import javax.persistence.TypedQuery;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -15,38 +21,88 @@ public class MapRepositoryImpl implements MapRepositoryCustom {
     @PersistenceContext
     private EntityManager entityManager;
 
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Timer findByIdMapTimer;
+    private Timer findAllMapTimer;
+    private Timer findFirstMapIdTimer;
+    private Timer updateGridTimer;
+
+    @PostConstruct
+    private void registerMetrics() {
+        findByIdMapTimer = queryTimer("findByIdMap");
+        findAllMapTimer = queryTimer("findAllMap");
+        findFirstMapIdTimer = queryTimer("findFirstMapId");
+        updateGridTimer = queryTimer("updateGrid");
+    }
 
     @Override
     public Map findByIdMap(Long id) {
-        // Construction de la requête
-        StringBuilder queryBuilder = new StringBuilder();
-        // Clause SELECT
-        queryBuilder.append("SELECT a.id, a.name, a.map ");
-        // Clause FROM
-        queryBuilder.append("FROM Map a ");
-        // Clause WHERE
-        queryBuilder.append("WHERE a.id = '" + id + "' ");
-
-        Query query = entityManager.createQuery(queryBuilder.toString());
-        return ObjetToMap((Object[]) query.getSingleResult());
+        return findByIdMapTimer.record(() -> {
+            // Construction de la requête
+            StringBuilder queryBuilder = new StringBuilder();
+            // Clause SELECT
+            queryBuilder.append("SELECT a.id, a.name, a.map, a.version, a.grid ");
+            // Clause FROM
+            queryBuilder.append("FROM Map a ");
+            // Clause WHERE
+            queryBuilder.append("WHERE a.id = :id ");
+
+            TypedQuery<Object[]> query = entityManager.createQuery(queryBuilder.toString(), Object[].class);
+            query.setParameter("id", id.intValue());
+            return ObjetToMap(query.getSingleResult());
+        });
     }
 
     @Override
     public List<Map> findAllMap() {
-        // Construction de la requête
-        StringBuilder queryBuilder = new StringBuilder();
-        // Clause SELECT
-        queryBuilder.append("SELECT a.id, a.name, a.map ");
-        // Clause FROM
-        queryBuilder.append("FROM Map a ");
-
-        Query query = entityManager.createQuery(queryBuilder.toString());
-        List<Object[]> objectList = ((List<Object[]>) query.getResultList());
-        List<Map> mapList = new ArrayList<>();
-        for (Object[] objet:objectList) {
-            mapList.add(ObjetToMap(objet));
-        }
-        return mapList;
+        return findAllMapTimer.record(() -> {
+            // Construction de la requête
+            StringBuilder queryBuilder = new StringBuilder();
+            // Clause SELECT
+            queryBuilder.append("SELECT a.id, a.name, a.map, a.version, a.grid ");
+            // Clause FROM
+            queryBuilder.append("FROM Map a ");
+            // Clause ORDER BY
+            queryBuilder.append("ORDER BY a.id");
+
+            Query query = entityManager.createQuery(queryBuilder.toString());
+            List<Object[]> objectList = ((List<Object[]>) query.getResultList());
+            List<Map> mapList = new ArrayList<>();
+            for (Object[] objet:objectList) {
+                mapList.add(ObjetToMap(objet));
+            }
+            return mapList;
+        });
+    }
+
+    @Override
+    public Long findFirstMapId() {
+        return findFirstMapIdTimer.record(() -> {
+            TypedQuery<Integer> query = entityManager.createQuery("SELECT MIN(a.id) FROM Map a", Integer.class);
+            Integer id = query.getSingleResult();
+            return id == null ? null : Long.valueOf(id);
+        });
+    }
+
+    @Override
+    @Transactional
+    public int updateGrid(Integer id, Integer version, byte[] grid) {
+        return updateGridTimer.record(() -> {
+            // Construction de la requête
+            StringBuilder queryBuilder = new StringBuilder();
+            // Clause UPDATE, the row changes : so does its version
+            queryBuilder.append("UPDATE Map a SET a.grid = :grid, a.map = NULL, a.version = a.version + 1 ");
+            // Clause WHERE
+            queryBuilder.append("WHERE a.id = :id AND a.version = :version");
+
+            Query query = entityManager.createQuery(queryBuilder.toString());
+            query.setParameter("grid", grid);
+            query.setParameter("id", id);
+            query.setParameter("version", version);
+            return query.executeUpdate();
+        });
     }
 
     private Map ObjetToMap(Object[] result) {
@@ -54,8 +110,15 @@ public class MapRepositoryImpl implements MapRepositoryCustom {
         map.setId((Integer) result[0]);
         map.setName((String) result[1]);
         map.setMap((String) result[2]);
+        map.setVersion((Integer) result[3]);
+        map.setGrid((byte[]) result[4]);
         return map;
     }
 
-
+    private Timer queryTimer(String method) {
+        return Timer.builder("yul.repository.query")
+                .tags("repository", "MapRepository", "method", method)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
 }
@@ -1,8 +1,12 @@
 package ca.onepoint.yul.service;
 
 import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.dto.AvatarPageDto;
+import ca.onepoint.yul.exception.InvalidQueryException;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface IAvatarService {
 
@@ -11,4 +15,31 @@ public interface IAvatarService {
     List<AvatarDto> getAllAvatars();
 
     List<AvatarDto> getAvatarsByType(Integer type);
+
+    /**
+     * @param type  type of the avatars, all of them when null
+     * @param after id of the last avatar of the previous page, 0 for the first page
+     */
+    AvatarPageDto getAvatarsPage(Integer type, int after, int limit) throws InvalidQueryException;
+
+    /**
+     * Goes through the avatars in id order without loading them all.
+     *
+     * @param type type of the avatars, all of them when null
+     */
+    void forEachAvatar(Integer type, Consumer<AvatarDto> consumer);
+
+    void moveAvatars(List<AvatarDto> avatars);
+
+    /**
+     * @param types types of avatar to return, all of them when null or empty
+     * @return the avatars at most radius squares away from the position, the nearest first
+     */
+    List<AvatarDto> getAvatarsWithin(int x, int y, int radius, Collection<Integer> types) throws InvalidQueryException;
+
+    /**
+     * @param types types of avatar to return, all of them when null or empty
+     * @return the k avatars nearest to the position, the nearest first
+     */
+    List<AvatarDto> getNearestAvatars(int x, int y, int k, Collection<Integer> types) throws InvalidQueryException;
 }
@@ -1,15 +1,27 @@
 package ca.onepoint.yul.service;
 
 import ca.onepoint.yul.dto.MapDto;
+import ca.onepoint.yul.dto.MapPaletteDto;
+import ca.onepoint.yul.grid.MapGrid;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import org.springframework.boot.configurationprocessor.json.JSONException;
 
 import java.util.List;
 
 public interface IMapService {
 
-    MapDto getMapById(Long id) throws JSONException, JsonProcessingException;
+    MapDto getMapById(Long id) throws JsonProcessingException;
 
-    List<MapDto> getAllMap() throws JSONException, JsonProcessingException;
+    List<MapDto> getAllMap() throws JsonProcessingException;
+
+    MapPaletteDto getMapPaletteById(Long id) throws JsonProcessingException;
+
+    List<MapPaletteDto> getAllMapPalettes() throws JsonProcessingException;
+
+    MapGrid getMapGridById(Long id) throws JsonProcessingException;
+
+    /**
+     * @return the id of the first map, null when there is no map
+     */
+    Long getFirstMapId();
 
 }
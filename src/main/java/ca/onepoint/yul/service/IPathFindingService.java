@@ -0,0 +1,18 @@
+package ca.onepoint.yul.service;
+
+import ca.onepoint.yul.dto.PathQueryDto;
+import ca.onepoint.yul.dto.PathResultDto;
+import ca.onepoint.yul.dto.PositionDto;
+import ca.onepoint.yul.pathfinding.PathAlgorithm;
+
+import java.util.List;
+
+public interface IPathFindingService {
+
+    /**
+     * @param mapId the map to search, the first one when null
+     */
+    List<PositionDto> findPath(Long mapId, int objectType, int fromX, int fromY, int toX, int toY, PathAlgorithm algorithm) throws Exception;
+
+    List<PathResultDto> findPaths(List<PathQueryDto> queries) throws Exception;
+}
@@ -1,14 +1,22 @@
 package ca.onepoint.yul.service.impl;
 
 import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.dto.AvatarPageDto;
 import ca.onepoint.yul.entity.Avatar;
+import ca.onepoint.yul.exception.InvalidQueryException;
+import ca.onepoint.yul.occupancy.AvatarPositionWriter;
+import ca.onepoint.yul.occupancy.AvatarSpatialIndex;
+import ca.onepoint.yul.occupancy.OccupancyGrid;
 import ca.onepoint.yul.repository.AvatarRepository;
 import ca.onepoint.yul.service.IAvatarService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 @Service(value = "AvatarService")
 public class AvatarServiceImpl implements IAvatarService {
@@ -16,6 +24,18 @@ public class AvatarServiceImpl implements IAvatarService {
     @Resource
     private AvatarRepository avatarRepository;
 
+    @Resource
+    private OccupancyGrid occupancyGrid;
+
+    @Resource
+    private AvatarSpatialIndex avatarSpatialIndex;
+
+    @Resource
+    private AvatarPositionWriter avatarPositionWriter;
+
+    @Value("${yul.avatar.page.max-size:1000}")
+    private int pageMaxSize;
+
     @Override
     public AvatarDto getAvatarById(Integer id) {
         return avatarRepository.findByIdAvatar(id);
@@ -30,7 +50,52 @@ public class AvatarServiceImpl implements IAvatarService {
 
     @Override
     public List<AvatarDto> getAvatarsByType(Integer type) {
-        return mapAvatarToDto(avatarRepository.findByType(type));
+        return avatarRepository.findByType(type);
+    }
+
+    @Override
+    public AvatarPageDto getAvatarsPage(Integer type, int after, int limit) throws InvalidQueryException {
+        if (limit < 1 || limit > pageMaxSize) {
+            throw new InvalidQueryException("Invalid limit, between 1 and " + pageMaxSize);
+        }
+        List<AvatarDto> avatars = avatarRepository.findPage(type, after, limit);
+        AvatarPageDto page = new AvatarPageDto();
+        page.setAvatars(avatars);
+        // A full page may be followed by others
+        page.setNext(avatars.size() == limit ? avatars.get(avatars.size() - 1).getId() : null);
+        return page;
+    }
+
+    @Override
+    public void forEachAvatar(Integer type, Consumer<AvatarDto> consumer) {
+        avatarRepository.forEachAvatar(type, consumer);
+    }
+
+    @Override
+    public void moveAvatars(List<AvatarDto> avatars) {
+        for (AvatarDto avatar : avatars) {
+            if (avatar.getId() != null && avatar.getX() != null && avatar.getY() != null) {
+                occupancyGrid.move(avatar.getId(), avatar.getX(), avatar.getY());
+                avatarSpatialIndex.move(avatar.getId(), avatar.getX(), avatar.getY(), avatar.getWaiting());
+                avatarPositionWriter.write(avatar.getId(), avatar.getX(), avatar.getY(), avatar.getWaiting());
+            }
+        }
+    }
+
+    @Override
+    public List<AvatarDto> getAvatarsWithin(int x, int y, int radius, Collection<Integer> types) throws InvalidQueryException {
+        if (radius < 0) {
+            throw new InvalidQueryException("Invalid radius < 0");
+        }
+        return avatarSpatialIndex.within(x, y, radius, types);
+    }
+
+    @Override
+    public List<AvatarDto> getNearestAvatars(int x, int y, int k, Collection<Integer> types) throws InvalidQueryException {
+        if (k < 1) {
+            throw new InvalidQueryException("Invalid number of avatars < 1");
+        }
+        return avatarSpatialIndex.nearest(x, y, k, types);
     }
 
     private List<AvatarDto> mapAvatarToDto(List<Avatar> avatarIterable) {
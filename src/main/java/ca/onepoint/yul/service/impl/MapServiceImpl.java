@@ -1,13 +1,12 @@
 package ca.onepoint.yul.service.impl;
 
 import ca.onepoint.yul.dto.MapDto;
+import ca.onepoint.yul.dto.MapPaletteDto;
 import ca.onepoint.yul.dto.SquareDto;
-import ca.onepoint.yul.entity.Map;
-import ca.onepoint.yul.repository.MapRepository;
+import ca.onepoint.yul.grid.MapGrid;
+import ca.onepoint.yul.grid.MapGridCache;
 import ca.onepoint.yul.service.IMapService;
-import org.springframework.boot.configurationprocessor.json.JSONArray;
-import org.springframework.boot.configurationprocessor.json.JSONException;
-import org.springframework.boot.configurationprocessor.json.JSONObject;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.Resource;
@@ -18,42 +17,85 @@ import java.util.List;
 public class MapServiceImpl implements IMapService {
 
     @Resource
-    private MapRepository mapRepository;
+    private MapGridCache mapGridCache;
 
     @Override
-    public MapDto getMapById(Long id) throws JSONException {
-        Map map = mapRepository.findByIdMap(id);
-        return mapEntiteToDto(map);
+    public MapDto getMapById(Long id) throws JsonProcessingException {
+        return mapGridToDto(mapGridCache.get(id));
     }
 
     @Override
-    public List<MapDto> getAllMap() throws JSONException {
-        List<Map> mapList = mapRepository.findAllMap();
+    public List<MapDto> getAllMap() throws JsonProcessingException {
         List<MapDto> mapListDto = new ArrayList<>();
 
-        for (Map map : mapList) {
-            mapListDto.add(mapEntiteToDto(map));
+        for (MapGrid grid : mapGridCache.getAll()) {
+            mapListDto.add(mapGridToDto(grid));
         }
         return mapListDto;
     }
 
-    private MapDto mapEntiteToDto(Map map) throws JSONException {
+    @Override
+    public MapPaletteDto getMapPaletteById(Long id) throws JsonProcessingException {
+        return mapGridToPaletteDto(mapGridCache.get(id));
+    }
+
+    @Override
+    public List<MapPaletteDto> getAllMapPalettes() throws JsonProcessingException {
+        List<MapPaletteDto> mapListDto = new ArrayList<>();
+
+        for (MapGrid grid : mapGridCache.getAll()) {
+            mapListDto.add(mapGridToPaletteDto(grid));
+        }
+        return mapListDto;
+    }
+
+    @Override
+    public MapGrid getMapGridById(Long id) throws JsonProcessingException {
+        return mapGridCache.get(id);
+    }
+
+    @Override
+    public Long getFirstMapId() {
+        return mapGridCache.getFirstId();
+    }
+
+    private MapDto mapGridToDto(MapGrid grid) {
         MapDto mapDto = new MapDto();
-        JSONArray jsonArr = new JSONArray(map.getMap().replace("\\", "").substring(1, map.getMap().replace("\\", "").length() - 1));
-        mapDto.setId(map.getId());
-        mapDto.setName(map.getName());
-        SquareDto[][] squareDtoList = new SquareDto[30][30];
-        for (int i = 0; i < jsonArr.length(); i++) {
-            JSONArray jsonArray = jsonArr.getJSONArray(i);
-            for (int j = 0; j < jsonArray.length(); j++) {
-                JSONObject jsonObj = jsonArray.getJSONObject(j);
+        mapDto.setId(grid.getId().intValue());
+        mapDto.setName(grid.getName());
+        mapDto.setWidth(grid.getWidth());
+        mapDto.setHeight(grid.getHeight());
+        SquareDto[][] squareDtoList = new SquareDto[grid.getHeight()][grid.getWidth()];
+        for (int y = 0; y < grid.getHeight(); y++) {
+            for (int x = 0; x < grid.getWidth(); x++) {
                 SquareDto squareDto = new SquareDto();
-                squareDto.setImage((String) jsonObj.get("image"));
-                squareDto.setValue(Integer.valueOf((String) jsonObj.get("value")));
-                squareDtoList[i][j] = squareDto;
+                squareDto.setImage(grid.getImage(x, y));
+                squareDto.setValue(grid.getValue(x, y));
+                squareDtoList[y][x] = squareDto;
             }
         }
         mapDto.setSquare(squareDtoList);
         return mapDto;
     }
+
+    private MapPaletteDto mapGridToPaletteDto(MapGrid grid) {
+        MapPaletteDto mapDto = new MapPaletteDto();
+        mapDto.setId(grid.getId().intValue());
+        mapDto.setName(grid.getName());
+        mapDto.setWidth(grid.getWidth());
+        mapDto.setHeight(grid.getHeight());
+        // The grid arrays are shared, the DTO gets copies
+        mapDto.setPalette(grid.getPalette().clone());
+        byte[] values = grid.getValues();
+        short[] images = grid.getImages();
+        int[] valueList = new int[values.length];
+        int[] imageList = new int[images.length];
+        for (int i = 0; i < values.length; i++) {
+            valueList[i] = values[i];
+            imageList[i] = images[i];
+        }
+        mapDto.setValues(valueList);
+        mapDto.setImages(imageList);
+        return mapDto;
+    }
 }
@@ -0,0 +1,274 @@
+package ca.onepoint.yul.service.impl;
+
+import ca.onepoint.yul.dto.PathQueryDto;
+import ca.onepoint.yul.dto.PathResultDto;
+import ca.onepoint.yul.dto.PositionDto;
+import ca.onepoint.yul.exception.InvalidQueryException;
+import ca.onepoint.yul.exception.MapNotFoundException;
+import ca.onepoint.yul.grid.MapGrid;
+import ca.onepoint.yul.occupancy.OccupancyGrid;
+import ca.onepoint.yul.pathfinding.AStarPathFinder;
+import ca.onepoint.yul.pathfinding.CellSet;
+import ca.onepoint.yul.pathfinding.DistanceField;
+import ca.onepoint.yul.pathfinding.DistanceFieldCache;
+import ca.onepoint.yul.pathfinding.HierarchicalGraphCache;
+import ca.onepoint.yul.pathfinding.JumpPointSearch;
+import ca.onepoint.yul.pathfinding.MapGraph;
+import ca.onepoint.yul.pathfinding.MapGraphCache;
+import ca.onepoint.yul.pathfinding.PathAlgorithm;
+import ca.onepoint.yul.pathfinding.PathCache;
+import ca.onepoint.yul.pathfinding.SearchStats;
+import ca.onepoint.yul.service.IMapService;
+import ca.onepoint.yul.service.IPathFindingService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.persistence.NoResultException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+@Service(value = "PathFindingService")
+public class PathFindingServiceImpl implements IPathFindingService {
+
+    // Tag values of the request timers, by index
+    private static final String[] CACHES = {"none", "hit", "miss"};
+    private static final int CACHE_NONE = 0;
+    private static final int CACHE_HIT = 1;
+    private static final int CACHE_MISS = 2;
+    private static final String[] OUTCOMES = {"error", "unreachable", "found"};
+    private static final int OUTCOME_ERROR = 0;
+    private static final int OUTCOME_UNREACHABLE = 1;
+    private static final int OUTCOME_FOUND = 2;
+
+    @Resource
+    private IMapService iMapService;
+
+    @Resource
+    private OccupancyGrid occupancyGrid;
+
+    @Resource
+    private MapGraphCache mapGraphCache;
+
+    @Resource
+    private DistanceFieldCache distanceFieldCache;
+
+    @Resource
+    private HierarchicalGraphCache hierarchicalGraphCache;
+
+    @Resource
+    private PathCache pathCache;
+
+    @Resource
+    private ForkJoinPool pathFindingPool;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${yul.path-finding.batch-max-size:10000}")
+    private int batchMaxSize;
+
+    /** By algorithm, cache and outcome */
+    private Timer[][][] requestTimers;
+    /** By algorithm */
+    private DistributionSummary[] expandedSummaries;
+
+    @PostConstruct
+    private void registerMetrics() {
+        PathAlgorithm[] algorithms = PathAlgorithm.values();
+        requestTimers = new Timer[algorithms.length][CACHES.length][OUTCOMES.length];
+        expandedSummaries = new DistributionSummary[algorithms.length];
+        for (PathAlgorithm algorithm : algorithms) {
+            for (int cache = 0; cache < CACHES.length; cache++) {
+                for (int outcome = 0; outcome < OUTCOMES.length; outcome++) {
+                    requestTimers[algorithm.ordinal()][cache][outcome] = Timer.builder("yul.path-finding")
+                            .description("Path requests, from the validation to the list of positions")
+                            .tags("algorithm", algorithm.name(), "cache", CACHES[cache], "outcome", OUTCOMES[outcome])
+                            .publishPercentileHistogram()
+                            .register(meterRegistry);
+                }
+            }
+            expandedSummaries[algorithm.ordinal()] = DistributionSummary.builder("yul.path-finding.expanded")
+                    .description("Nodes taken out of the open set by a search")
+                    .baseUnit("nodes")
+                    .tags("algorithm", algorithm.name())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+    }
+
+    @Override
+    public List<PositionDto> findPath(Long mapId, int objectType, int fromX, int fromY, int toX, int toY, PathAlgorithm algorithm) throws Exception {
+        return solve(takeSnapshot(mapId), objectType, fromX, fromY, toX, toY, algorithm);
+    }
+
+    @Override
+    public List<PathResultDto> findPaths(List<PathQueryDto> queries) throws Exception {
+        if (queries.size() > batchMaxSize) {
+            throw new InvalidQueryException("Too many queries, " + batchMaxSize + " at most");
+        }
+        // Every query of the batch on a map sees the same version of it and the same avatars
+        HashMap<Long, Snapshot> snapshots = new HashMap<>();
+        HashMap<Long, String> errors = new HashMap<>();
+        for (PathQueryDto query : queries) {
+            if (!snapshots.containsKey(query.getMapId()) && !errors.containsKey(query.getMapId())) {
+                try {
+                    snapshots.put(query.getMapId(), takeSnapshot(query.getMapId()));
+                } catch (Exception e) {
+                    errors.put(query.getMapId(), e.getMessage());
+                }
+            }
+        }
+        PathResultDto[] results = new PathResultDto[queries.size()];
+        try {
+            pathFindingPool.submit(() -> IntStream.range(0, results.length).parallel()
+                    .forEach(i -> results[i] = solveQuery(snapshots.get(queries.get(i).getMapId()), errors.get(queries.get(i).getMapId()), queries.get(i))))
+                    .get();
+        } catch (ExecutionException e) {
+            throw new Exception("ERROR !", e.getCause());
+        }
+        return Arrays.asList(results);
+    }
+
+    private Snapshot takeSnapshot(Long mapId) throws Exception {
+        // Only the map asked for, the first one when none : its id is cached, no other map is loaded
+        Long id = mapId != null ? mapId : iMapService.getFirstMapId();
+        if (id == null) {
+            throw new MapNotFoundException("No map");
+        }
+        // Fetch the current version of the map, the grids are cached and shared by every request
+        MapGrid map;
+        try {
+            map = iMapService.getMapGridById(id);
+        } catch (NoResultException | EmptyResultDataAccessException e) {
+            throw new MapNotFoundException("Map " + id + " not found");
+        } catch (Exception e){
+            throw new Exception("ERROR !", e);
+        }
+
+        // Cells occupied by an avatar of the map can't be gone through
+        OccupancyGrid.Snapshot occupancy = occupancyGrid.snapshot(map);
+        pathCache.sync(map, occupancy.getBlocked(), occupancy.getVersion());
+        return new Snapshot(map, occupancy.getBlocked(), occupancy.getVersion());
+    }
+
+    private PathResultDto solveQuery(Snapshot snapshot, String snapshotError, PathQueryDto query) {
+        PathResultDto result = new PathResultDto();
+        if (snapshot == null) {
+            result.setError(snapshotError);
+            return result;
+        }
+        try {
+            PathAlgorithm algorithm = query.getAlgorithm() != null ? query.getAlgorithm() : PathAlgorithm.ASTAR;
+            result.setPath(solve(snapshot, query.getObjectType(), query.getFromX(), query.getFromY(), query.getToX(), query.getToY(), algorithm));
+            if (result.getPath() == null) {
+                result.setError("No path found");
+            }
+        } catch (Exception e) {
+            result.setError(e.getMessage());
+        }
+        return result;
+    }
+
+    private List<PositionDto> solve(Snapshot snapshot, int objectType, int fromX, int fromY, int toX, int toY, PathAlgorithm algorithm) throws Exception {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        SearchStats stats = new SearchStats();
+        int outcome = OUTCOME_ERROR;
+        int cache = CACHE_NONE;
+        try {
+            MapGrid map = snapshot.map;
+            int h = map.getHeight();
+            int w = map.getWidth();
+
+            // Verify that input is OK
+            if(fromX < 0 || fromY < 0 || toX < 0 || toY < 0){
+                throw new InvalidQueryException("Invalid positions < 0");
+            }
+            if(fromX >= w || toX >= w || fromY >= h || toY >= h){
+                throw new InvalidQueryException("Invalid positions > map width");
+            }
+
+            MapGraph graph = mapGraphCache.get(map, objectType);
+
+            // Verify that from and to position are on roads
+            if(!graph.isFree(map.index(toX, toY), snapshot.blocked)){
+                throw new InvalidQueryException("From or To positions not on road !");
+            }
+
+            int from = map.index(fromX, fromY);
+            int to = map.index(toX, toY);
+            // Many avatars ask for the same routes, they are kept until an avatar moves on or next to them
+            PathCache.Entry cached = pathCache.get(graph, algorithm, from, to);
+            int[] path;
+            if (cached != null) {
+                cache = CACHE_HIT;
+                path = cached.getPath();
+            } else {
+                cache = CACHE_MISS;
+                path = findCells(graph, objectType, snapshot, from, to, algorithm, stats);
+                pathCache.put(graph, algorithm, from, to, path, snapshot.occupancyVersion);
+            }
+            if (path == null) {
+                outcome = OUTCOME_UNREACHABLE;
+                return null;
+            }
+            outcome = OUTCOME_FOUND;
+            List<PositionDto> positions = new ArrayList<>(path.length);
+            for (int cell : path) {
+                positions.add(new PositionDto(cell % w, cell / w));
+            }
+            return positions;
+        } finally {
+            sample.stop(requestTimers[algorithm.ordinal()][cache][outcome]);
+            if (stats.getSearches() > 0) {
+                expandedSummaries[algorithm.ordinal()].record(stats.getExpanded());
+            }
+        }
+    }
+
+    private int[] findCells(MapGraph graph, int objectType, Snapshot snapshot, int from, int to, PathAlgorithm algorithm, SearchStats stats) {
+        CellSet blocked = snapshot.blocked;
+        if (!DistanceFieldCache.isDestination(graph.getGrid().getValues()[to])) {
+            switch (algorithm) {
+                case JPS:
+                    return JumpPointSearch.findPath(graph, blocked, from, to, stats);
+                case HPA:
+                    return hierarchicalGraphCache.get(graph, objectType).findPath(graph, blocked, snapshot.occupancyVersion, from, to, stats);
+                default:
+                    return AStarPathFinder.findPath(graph, blocked, from, to, null, stats);
+            }
+        }
+        // Shops, companies and the finish are asked for all the time : walk down their distance field
+        DistanceField field = distanceFieldCache.get(graph, to);
+        if (field.distance(from) == DistanceField.UNREACHABLE) {
+            return null;
+        }
+        int[] path = field.descend(blocked, from);
+        return path != null ? path : AStarPathFinder.findPath(graph, blocked, from, to, field, stats);
+    }
+
+    /**
+     * Map and avatars a path request is solved against, read-only once taken.
+     */
+    private static final class Snapshot {
+        private final MapGrid map;
+        private final CellSet blocked;
+        private final long occupancyVersion;
+
+        private Snapshot(MapGrid map, CellSet blocked, long occupancyVersion) {
+            this.map = map;
+            this.blocked = blocked;
+            this.occupancyVersion = occupancyVersion;
+        }
+    }
+}
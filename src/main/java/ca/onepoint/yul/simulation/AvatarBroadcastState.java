@@ -0,0 +1,268 @@
+package ca.onepoint.yul.simulation;
+
+import ca.onepoint.yul.dto.AvatarDeltaDto;
+import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.dto.AvatarMoveDto;
+import ca.onepoint.yul.dto.AvatarSnapshotDto;
+import ca.onepoint.yul.entity.Avatar;
+import ca.onepoint.yul.exception.InvalidQueryException;
+import ca.onepoint.yul.service.IAvatarService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Avatars as last broadcast to the clients, so that only what changed is sent.
+ * The avatars are loaded once, on first use, then kept in line with the saved ones by {@link ca.onepoint.yul.occupancy.AvatarOccupancyListener}.
+ * The name, image and type only go out in the snapshots.
+ * The map is also cut in square regions of region-size squares : region (cx, cy) holds the squares
+ * cx * size <= x < (cx + 1) * size and cy * size <= y < (cy + 1) * size. Each region has its own deltas,
+ * with their own sequence, holding the avatars that moved in it, entered it or left it.
+ */
+@Component
+public class AvatarBroadcastState {
+
+    @Resource
+    private IAvatarService iAvatarService;
+
+    @Value("${yul.simulation.region-size:16}")
+    private int regionSize;
+
+    private final LinkedHashMap<Integer, AvatarDto> avatars = new LinkedHashMap<>();
+    private boolean loaded;
+    private long sequence;
+    /** Avatars in each region, by {@link #region} */
+    private final HashMap<Long, LinkedHashSet<Integer>> members = new HashMap<>();
+    private final HashMap<Long, Long> regionSequences = new HashMap<>();
+    /** Changes of the avatars saved since the last delta, sent with the next one */
+    private List<AvatarMoveDto> savedChanges = new ArrayList<>();
+    private LinkedHashMap<Long, List<AvatarMoveDto>> savedChangesByRegion = new LinkedHashMap<>();
+
+    /**
+     * Records moves and returns the ones that change something, with the changes of the avatars saved since the last delta.
+     *
+     * @return the deltas to broadcast, null when no avatar changed
+     */
+    public synchronized Deltas delta(List<AvatarDto> moves) {
+        ensureLoaded();
+        List<AvatarMoveDto> changed = savedChanges;
+        LinkedHashMap<Long, List<AvatarMoveDto>> changedByRegion = savedChangesByRegion;
+        savedChanges = new ArrayList<>();
+        savedChangesByRegion = new LinkedHashMap<>();
+        for (AvatarDto move : moves) {
+            if (move.getId() == null) {
+                continue;
+            }
+            AvatarDto avatar = avatars.get(move.getId());
+            if (avatar == null) {
+                avatar = new AvatarDto();
+                avatar.setId(move.getId());
+                avatar.setName(move.getName());
+                avatar.setType(move.getType());
+                avatar.setImage(move.getImage());
+                avatar.setMain(move.getMain());
+                avatars.put(move.getId(), avatar);
+            }
+            // Missing values are left as they are
+            Integer x = move.getX() != null ? move.getX() : avatar.getX();
+            Integer y = move.getY() != null ? move.getY() : avatar.getY();
+            Integer waiting = move.getWaiting() != null ? move.getWaiting() : avatar.getWaiting();
+            apply(avatar, x, y, waiting, changed, changedByRegion);
+        }
+        if (changed.isEmpty()) {
+            return null;
+        }
+        AvatarDeltaDto all = new AvatarDeltaDto();
+        all.setSequence(++sequence);
+        all.setAvatars(changed);
+        LinkedHashMap<String, AvatarDeltaDto> regions = new LinkedHashMap<>();
+        changedByRegion.forEach((region, avatarsInRegion) -> {
+            AvatarDeltaDto delta = new AvatarDeltaDto();
+            delta.setSequence(regionSequences.merge(region, 1L, Long::sum));
+            delta.setAvatars(avatarsInRegion);
+            regions.put(regionTopic(region), delta);
+        });
+        return new Deltas(all, regions);
+    }
+
+    /**
+     * @return all the avatars, with the sequence of the last delta they include
+     */
+    public synchronized AvatarSnapshotDto snapshot() {
+        ensureLoaded();
+        return snapshot(avatars.keySet(), sequence);
+    }
+
+    /**
+     * @return the avatars in a region, with the sequence of the last delta of the region they include
+     */
+    public synchronized AvatarSnapshotDto regionSnapshot(int cx, int cy) throws InvalidQueryException {
+        if (cx < 0 || cy < 0) {
+            throw new InvalidQueryException("Invalid region < 0");
+        }
+        ensureLoaded();
+        long region = pack(cx, cy);
+        return snapshot(members.getOrDefault(region, new LinkedHashSet<>()), regionSequences.getOrDefault(region, 0L));
+    }
+
+    /**
+     * Records an avatar saved outside of the moves of the simulation, created or changed. Its name, image and type
+     * are in the next snapshots, its position and waiting state go out with the next delta.
+     */
+    public synchronized void save(Avatar saved) {
+        if (!loaded) {
+            // Loaded as saved on first use
+            return;
+        }
+        AvatarDto avatar = avatars.get(saved.getId());
+        if (avatar == null) {
+            avatar = new AvatarDto();
+            avatar.setId(saved.getId());
+            avatars.put(saved.getId(), avatar);
+        }
+        avatar.setName(saved.getName());
+        avatar.setType(saved.getType());
+        avatar.setImage(saved.getImage());
+        avatar.setMain(saved.getMain());
+        apply(avatar, saved.getX(), saved.getY(), saved.getWaiting(), savedChanges, savedChangesByRegion);
+    }
+
+    /**
+     * Forgets a deleted avatar, it is no longer in the snapshots.
+     */
+    public synchronized void remove(Integer avatarId) {
+        AvatarDto avatar = avatars.remove(avatarId);
+        if (avatar == null) {
+            return;
+        }
+        Long region = region(avatar.getX(), avatar.getY());
+        if (region != null) {
+            members.get(region).remove(avatarId);
+        }
+    }
+
+    public int getRegionSize() {
+        return regionSize;
+    }
+
+    /**
+     * Moves an avatar and adds the change to the deltas, when there is one.
+     */
+    private void apply(AvatarDto avatar, Integer x, Integer y, Integer waiting,
+                       List<AvatarMoveDto> changed, Map<Long, List<AvatarMoveDto>> changedByRegion) {
+        if (Objects.equals(x, avatar.getX()) && Objects.equals(y, avatar.getY()) && Objects.equals(waiting, avatar.getWaiting())) {
+            return;
+        }
+        Long left = region(avatar.getX(), avatar.getY());
+        Long entered = region(x, y);
+        avatar.setX(x);
+        avatar.setY(y);
+        avatar.setWaiting(waiting);
+        AvatarMoveDto delta = new AvatarMoveDto();
+        delta.setId(avatar.getId());
+        delta.setX(x);
+        delta.setY(y);
+        delta.setWaiting(waiting);
+        changed.add(delta);
+        if (left != null) {
+            changedByRegion.computeIfAbsent(left, region -> new ArrayList<>()).add(delta);
+        }
+        if (entered != null && !entered.equals(left)) {
+            changedByRegion.computeIfAbsent(entered, region -> new ArrayList<>()).add(delta);
+        }
+        if (!Objects.equals(left, entered)) {
+            if (left != null) {
+                members.get(left).remove(avatar.getId());
+            }
+            if (entered != null) {
+                members.computeIfAbsent(entered, region -> new LinkedHashSet<>()).add(avatar.getId());
+            }
+        }
+    }
+
+    private AvatarSnapshotDto snapshot(Iterable<Integer> ids, long snapshotSequence) {
+        List<AvatarDto> copies = new ArrayList<>();
+        for (Integer id : ids) {
+            AvatarDto avatar = avatars.get(id);
+            AvatarDto copy = new AvatarDto();
+            copy.setId(avatar.getId());
+            copy.setName(avatar.getName());
+            copy.setType(avatar.getType());
+            copy.setImage(avatar.getImage());
+            copy.setWaiting(avatar.getWaiting());
+            copy.setMain(avatar.getMain());
+            copy.setX(avatar.getX());
+            copy.setY(avatar.getY());
+            copies.add(copy);
+        }
+        AvatarSnapshotDto snapshot = new AvatarSnapshotDto();
+        snapshot.setSequence(snapshotSequence);
+        snapshot.setAvatars(copies);
+        return snapshot;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        if (regionSize < 1) {
+            throw new IllegalStateException("Invalid region size " + regionSize);
+        }
+        for (AvatarDto avatar : iAvatarService.getAllAvatars()) {
+            avatars.put(avatar.getId(), avatar);
+            Long region = region(avatar.getX(), avatar.getY());
+            if (region != null) {
+                members.computeIfAbsent(region, key -> new LinkedHashSet<>()).add(avatar.getId());
+            }
+        }
+        loaded = true;
+    }
+
+    /**
+     * @return the region of a square, null when off the map
+     */
+    private Long region(Integer x, Integer y) {
+        if (x == null || y == null || x < 0 || y < 0) {
+            return null;
+        }
+        return pack(x / regionSize, y / regionSize);
+    }
+
+    private static long pack(int cx, int cy) {
+        return ((long) cx << 32) | cy;
+    }
+
+    private static String regionTopic(long region) {
+        return "/topic/region/" + (int) (region >>> 32) + "/" + (int) region;
+    }
+
+    /**
+     * Deltas of a tick : for all the avatars, and for each region by topic.
+     */
+    public static final class Deltas {
+        private final AvatarDeltaDto all;
+        private final Map<String, AvatarDeltaDto> regions;
+
+        private Deltas(AvatarDeltaDto all, Map<String, AvatarDeltaDto> regions) {
+            this.all = all;
+            this.regions = Collections.unmodifiableMap(regions);
+        }
+
+        public AvatarDeltaDto getAll() {
+            return all;
+        }
+
+        public Map<String, AvatarDeltaDto> getRegions() {
+            return regions;
+        }
+    }
+}
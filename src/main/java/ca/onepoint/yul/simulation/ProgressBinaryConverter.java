@@ -0,0 +1,97 @@
+package ca.onepoint.yul.simulation;
+
+import ca.onepoint.yul.dto.AvatarDeltaDto;
+import ca.onepoint.yul.dto.AvatarMoveDto;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageHeaders;
+import org.springframework.messaging.converter.AbstractMessageConverter;
+import org.springframework.util.MimeType;
+import org.springframework.util.MimeTypeUtils;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of the /topic/progress messages, sent to /topic/progress/binary for the clients
+ * that would rather read them with a DataView than parse JSON. Big-endian, two kinds of messages :
+ * <ul>
+ *     <li>the clock : the byte 2, then the seconds of the day as an int32</li>
+ *     <li>an avatar delta : the byte 1, the sequence as an int64, the number of avatars as an int32, then
+ *     for each avatar its id, x, y and waiting state as int32, -1 when unknown</li>
+ * </ul>
+ */
+public class ProgressBinaryConverter extends AbstractMessageConverter {
+
+    /** Spring only sends the application/octet-stream messages as binary WebSocket frames */
+    public static final MimeType MIME_TYPE = MimeTypeUtils.APPLICATION_OCTET_STREAM;
+
+    private static final byte CLOCK = 2;
+    private static final byte AVATAR_DELTA = 1;
+    private static final int UNKNOWN = -1;
+
+    public ProgressBinaryConverter() {
+        super(MIME_TYPE);
+        // Only when asked for with the content type header, JSON stays the default
+        setStrictContentTypeMatch(true);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return AvatarDeltaDto.class == clazz || Integer.class == clazz;
+    }
+
+    @Override
+    protected Object convertToInternal(Object payload, MessageHeaders headers, Object conversionHint) {
+        if (payload instanceof Integer) {
+            return ByteBuffer.allocate(5).put(CLOCK).putInt((Integer) payload).array();
+        }
+        AvatarDeltaDto delta = (AvatarDeltaDto) payload;
+        List<AvatarMoveDto> avatars = delta.getAvatars();
+        ByteBuffer buffer = ByteBuffer.allocate(13 + 16 * avatars.size())
+                .put(AVATAR_DELTA)
+                .putLong(delta.getSequence())
+                .putInt(avatars.size());
+        for (AvatarMoveDto avatar : avatars) {
+            buffer.putInt(avatar.getId())
+                    .putInt(orUnknown(avatar.getX()))
+                    .putInt(orUnknown(avatar.getY()))
+                    .putInt(orUnknown(avatar.getWaiting()));
+        }
+        return buffer.array();
+    }
+
+    @Override
+    protected Object convertFromInternal(Message<?> message, Class<?> targetClass, Object conversionHint) {
+        ByteBuffer buffer = ByteBuffer.wrap((byte[]) message.getPayload());
+        byte kind = buffer.get();
+        if (kind == CLOCK) {
+            return targetClass == Integer.class ? buffer.getInt() : null;
+        }
+        if (kind != AVATAR_DELTA || targetClass != AvatarDeltaDto.class) {
+            return null;
+        }
+        AvatarDeltaDto delta = new AvatarDeltaDto();
+        delta.setSequence(buffer.getLong());
+        int count = buffer.getInt();
+        List<AvatarMoveDto> avatars = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AvatarMoveDto avatar = new AvatarMoveDto();
+            avatar.setId(buffer.getInt());
+            avatar.setX(known(buffer.getInt()));
+            avatar.setY(known(buffer.getInt()));
+            avatar.setWaiting(known(buffer.getInt()));
+            avatars.add(avatar);
+        }
+        delta.setAvatars(avatars);
+        return delta;
+    }
+
+    private static int orUnknown(Integer value) {
+        return value != null ? value : UNKNOWN;
+    }
+
+    private static Integer known(int value) {
+        return value != UNKNOWN ? value : null;
+    }
+}
@@ -0,0 +1,177 @@
+package ca.onepoint.yul.simulation;
+
+import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.service.IAvatarService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageSendingOperations;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock of the simulation, ticking at a fixed rate on its own thread.
+ * The avatar moves received between two ticks are queued, then applied together by the next tick.
+ * Only the avatars whose position or waiting state changed are sent to /topic/progress, in a single delta.
+ * The seconds of the day are sent each time they change, and a snapshot of all the avatars is sent to
+ * /topic/avatars/snapshot at regular intervals.
+ * Each region of the map gets the deltas of the avatars moving in it, entering it or leaving it on
+ * /topic/region/{cx}/{cy}, see {@link AvatarBroadcastState}.
+ * The same deltas and seconds are sent to the same topics followed by /binary, encoded by {@link ProgressBinaryConverter}.
+ * A topic nobody is subscribed to is skipped, its payload is not even serialized.
+ * The clock is read from the time elapsed since the start, not counted in ticks, so a late tick never shifts it.
+ */
+@Component
+public class SimulationEngine {
+
+    public static final int SECONDS_PER_DAY = 86400;
+
+    @Resource
+    private ScheduledExecutorService simulationScheduler;
+
+    @Resource
+    private IAvatarService iAvatarService;
+
+    @Resource
+    private AvatarBroadcastState avatarBroadcastState;
+
+    @Resource
+    private SimpMessageSendingOperations messagingTemplate;
+
+    @Resource
+    private TopicSubscriptions topicSubscriptions;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Value("${yul.simulation.tick-rate:10}")
+    private int tickRate;
+
+    @Value("${yul.simulation.snapshot-interval:30}")
+    private int snapshotInterval;
+
+    private final ConcurrentLinkedQueue<AvatarDto> pendingMoves = new ConcurrentLinkedQueue<>();
+    private ScheduledFuture<?> ticks;
+    private long startNanos;
+    private volatile int secondes;
+    private Timer tickTimer;
+    private Counter movesApplied;
+
+    @PostConstruct
+    public void init() {
+        // A wrong rate stops the application at startup rather than the simulation only
+        if (tickRate < 1 || tickRate > 1000) {
+            throw new IllegalStateException("Invalid tick rate " + tickRate + ", between 1 and 1000 per second");
+        }
+        tickTimer = Timer.builder("yul.simulation.tick")
+                .description("Ticks of the simulation, from the queued moves to the broadcast")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        movesApplied = Counter.builder("yul.simulation.moves")
+                .description("Avatar moves applied by the ticks")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts the clock at 0, does nothing when already started.
+     */
+    public synchronized void start() {
+        if (ticks != null) {
+            return;
+        }
+        long period = TimeUnit.SECONDS.toNanos(1) / tickRate;
+        startNanos = System.nanoTime();
+        // Fixed rate : each tick is due at start + n * period, whatever the duration of the previous ones
+        ticks = simulationScheduler.scheduleAtFixedRate(this::tick, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Queues avatar moves, applied and broadcast by the next tick.
+     */
+    public void submitMoves(List<AvatarDto> moves) {
+        pendingMoves.addAll(moves);
+    }
+
+    /**
+     * @return the seconds of the day of the simulation
+     */
+    public int getSecondes() {
+        return secondes;
+    }
+
+    private void tick() {
+        // An exception would cancel the next ticks
+        try {
+            tickTimer.record(() -> {
+                List<AvatarDto> moves = drainMoves();
+                if (!moves.isEmpty()) {
+                    iAvatarService.moveAvatars(moves);
+                    movesApplied.increment(moves.size());
+                }
+                // Every tick : the avatars saved outside of the moves go out too
+                AvatarBroadcastState.Deltas deltas = avatarBroadcastState.delta(moves);
+                if (deltas != null) {
+                    send("/topic/progress", deltas.getAll());
+                    deltas.getRegions().forEach(this::send);
+                }
+                int now = (int) (TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startNanos) % SECONDS_PER_DAY);
+                if (now != secondes) {
+                    secondes = now;
+                    send("/topic/progress", now);
+                    if (snapshotInterval > 0 && now % snapshotInterval == 0 && topicSubscriptions.hasSubscribers("/topic/avatars/snapshot")) {
+                        messagingTemplate.convertAndSend("/topic/avatars/snapshot", avatarBroadcastState.snapshot());
+                    }
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void send(String destination, Object payload) {
+        if (topicSubscriptions.hasSubscribers(destination)) {
+            messagingTemplate.convertAndSend(destination, payload);
+        }
+        if (!topicSubscriptions.hasSubscribers(destination + "/binary")) {
+            return;
+        }
+        // The content type picks the converter, it has to be a header of the message, not a native header
+        SimpMessageHeaderAccessor binary = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        binary.setContentType(ProgressBinaryConverter.MIME_TYPE);
+        binary.setLeaveMutable(true);
+        messagingTemplate.convertAndSend(destination + "/binary", payload, binary.getMessageHeaders());
+    }
+
+    /**
+     * Moves queued since the last tick, only the last one of each avatar.
+     */
+    private List<AvatarDto> drainMoves() {
+        LinkedHashMap<Integer, AvatarDto> byAvatar = new LinkedHashMap<>();
+        List<AvatarDto> anonymous = new ArrayList<>();
+        AvatarDto move;
+        while ((move = pendingMoves.poll()) != null) {
+            if (move.getId() == null) {
+                anonymous.add(move);
+            } else {
+                // Moved to the end, in the order of the last moves
+                byAvatar.remove(move.getId());
+                byAvatar.put(move.getId(), move);
+            }
+        }
+        List<AvatarDto> moves = new ArrayList<>(byAvatar.values());
+        moves.addAll(anonymous);
+        return moves;
+    }
+}
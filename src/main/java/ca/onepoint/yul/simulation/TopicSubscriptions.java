@@ -0,0 +1,85 @@
+package ca.onepoint.yul.simulation;
+
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.socket.messaging.SessionDisconnectEvent;
+import org.springframework.web.socket.messaging.SessionSubscribeEvent;
+import org.springframework.web.socket.messaging.SessionUnsubscribeEvent;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Destinations the STOMP clients are subscribed to, so that a payload nobody subscribed to is
+ * neither serialized nor published. Subscriptions with a pattern (/topic/region/**) are matched
+ * as the simple broker does.
+ */
+@Component
+public class TopicSubscriptions {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    /** Destination of each subscription, by session id then subscription id */
+    private final HashMap<String, HashMap<String, String>> sessions = new HashMap<>();
+    /** Number of subscriptions to each destination without pattern */
+    private final HashMap<String, Integer> destinations = new HashMap<>();
+    /** Number of subscriptions to each pattern */
+    private final HashMap<String, Integer> patterns = new HashMap<>();
+
+    public synchronized boolean hasSubscribers(String destination) {
+        if (destinations.containsKey(destination)) {
+            return true;
+        }
+        for (String pattern : patterns.keySet()) {
+            if (pathMatcher.match(pattern, destination)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @EventListener
+    public synchronized void onSubscribe(SessionSubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        if (headers.getSessionId() == null || headers.getSubscriptionId() == null || headers.getDestination() == null) {
+            return;
+        }
+        String previous = sessions.computeIfAbsent(headers.getSessionId(), id -> new HashMap<>())
+                .put(headers.getSubscriptionId(), headers.getDestination());
+        if (previous != null) {
+            release(previous);
+        }
+        countOf(headers.getDestination()).merge(headers.getDestination(), 1, Integer::sum);
+    }
+
+    @EventListener
+    public synchronized void onUnsubscribe(SessionUnsubscribeEvent event) {
+        SimpMessageHeaderAccessor headers = SimpMessageHeaderAccessor.wrap(event.getMessage());
+        HashMap<String, String> subscriptions = sessions.get(headers.getSessionId());
+        if (subscriptions != null) {
+            String destination = subscriptions.remove(headers.getSubscriptionId());
+            if (destination != null) {
+                release(destination);
+            }
+        }
+    }
+
+    @EventListener
+    public synchronized void onDisconnect(SessionDisconnectEvent event) {
+        HashMap<String, String> subscriptions = sessions.remove(event.getSessionId());
+        if (subscriptions != null) {
+            for (String destination : subscriptions.values()) {
+                release(destination);
+            }
+        }
+    }
+
+    private void release(String destination) {
+        countOf(destination).computeIfPresent(destination, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    private Map<String, Integer> countOf(String destination) {
+        return pathMatcher.isPattern(destination) ? patterns : destinations;
+    }
+}
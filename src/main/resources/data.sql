@@ -9,15 +9,19 @@ CREATE TABLE avatar
     waiting INT          NOT NULL,
     main INT          NOT NULL default 0,
     x INT          NOT NULL default 0,
-    y INT          NOT NULL default 0
+    y INT          NOT NULL default 0,
+    map_id INT     NOT NULL default 1
 );
+CREATE INDEX avatar_type ON avatar (type, id);
 
 DROP TABLE IF EXISTS map;
 CREATE TABLE map
 (
     id   INT AUTO_INCREMENT PRIMARY KEY,
     name VARCHAR(250) NOT NULL,
-    map  JSON         NOT NULL
+    map  JSON         DEFAULT NULL,
+    grid BLOB         DEFAULT NULL,
+    version INT      NOT NULL default 0
 );
 
 DROP TABLE IF EXISTS type;
@@ -27,6 +31,18 @@ CREATE TABLE type
     name VARCHAR(250) NOT NULL
 );
 
+DROP TABLE IF EXISTS transit_link;
+CREATE TABLE transit_link
+(
+    id     INT AUTO_INCREMENT PRIMARY KEY,
+    map_id INT NOT NULL,
+    from_x INT NOT NULL,
+    from_y INT NOT NULL,
+    to_x   INT NOT NULL,
+    to_y   INT NOT NULL
+);
+CREATE INDEX transit_link_map ON transit_link (map_id, id);
+
 
 
 INSERT INTO avatar (name, type, image, waiting, main, x, y)
@@ -38,3 +54,10 @@ values ('Montreal', '[[{"value":"0","image":"../assets/images/pvm.jpeg"},{"value
 
 INSERT INTO type(name)
 values ('principal'), ('police'), ('pieton');
+
+-- Subway of Montreal : from next to a station of a line to next to a station of the other line, in one move
+INSERT INTO transit_link (map_id, from_x, from_y, to_x, to_y)
+values (1, 9, 8, 15, 26), (1, 15, 26, 9, 8),
+       (1, 9, 8, 16, 25), (1, 16, 25, 9, 8),
+       (1, 8, 9, 15, 26), (1, 15, 26, 8, 9),
+       (1, 8, 9, 16, 25), (1, 16, 25, 8, 9);
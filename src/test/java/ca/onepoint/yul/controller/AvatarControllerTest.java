@@ -0,0 +1,64 @@
+package ca.onepoint.yul.controller;
+
+import ca.onepoint.yul.exception.GlobalControllerExceptionHandler;
+import ca.onepoint.yul.service.impl.AvatarServiceImpl;
+import ca.onepoint.yul.simulation.AvatarBroadcastState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Query parameters the client has to fix, answered with a 400 through {@link GlobalControllerExceptionHandler}.
+ */
+class AvatarControllerTest {
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        AvatarController avatarController = new AvatarController();
+        AvatarServiceImpl avatarService = new AvatarServiceImpl();
+        ReflectionTestUtils.setField(avatarService, "pageMaxSize", 1000);
+        ReflectionTestUtils.setField(avatarController, "iAvatarService", avatarService);
+        ReflectionTestUtils.setField(avatarController, "avatarBroadcastState", new AvatarBroadcastState());
+        mockMvc = MockMvcBuilders.standaloneSetup(avatarController)
+                .setControllerAdvice(new GlobalControllerExceptionHandler())
+                .build();
+    }
+
+    @Test
+    void negativeRadiusIsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/avatar/within/3/4/-1"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid radius < 0"));
+    }
+
+    @Test
+    void noNearestAvatarIsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/avatar/nearest/3/4/0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid number of avatars < 1"));
+    }
+
+    @Test
+    void limitOutOfRangeIsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/avatar/").param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid limit, between 1 and 1000"));
+        mockMvc.perform(get("/api/avatar/type/1").param("limit", "1001"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void negativeRegionIsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/avatar/region/-1/0/snapshot"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("Invalid region < 0"));
+    }
+}
@@ -0,0 +1,84 @@
+package ca.onepoint.yul.controller;
+
+import ca.onepoint.yul.grid.MapGridCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MapResponseCacheTest {
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final MapGridCache mapGridCache = new MapGridCache();
+    private final MapResponseCache mapResponseCache = new MapResponseCache();
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(mapGridCache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.invokeMethod(mapGridCache, "registerMetrics");
+        ReflectionTestUtils.setField(mapResponseCache, "mapGridCache", mapGridCache);
+        ReflectionTestUtils.setField(mapResponseCache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(mapResponseCache, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.invokeMethod(mapResponseCache, "registerMetrics");
+    }
+
+    @Test
+    void countersAreRegisteredUpFront() {
+        assertThat(meterRegistry.find("yul.map.response.requests").counters())
+                .extracting(counter -> counter.getId().getTag("result"))
+                .containsExactlyInAnyOrder("miss", "hit", "not-modified");
+    }
+
+    @Test
+    void lastModifiedIsTheOneOfTheMap() throws Exception {
+        long map1Modified = respond("squares/1", 1L, null).getHeaders().getLastModified();
+
+        // HTTP dates have a second resolution
+        Thread.sleep(1100);
+        mapGridCache.evict(2L);
+
+        // Rebuilt, map 1 keeps its date : the change of map 2 does not make clients download it again
+        ResponseEntity<byte[]> map1 = respond("squares/1", 1L, null);
+        assertThat(map1.getHeaders().getLastModified()).isEqualTo(map1Modified);
+        assertThat(map1.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        assertThat(count("miss")).isEqualTo(2);
+        ResponseEntity<byte[]> notModified = respond("squares/1", 1L, map1Modified);
+        assertThat(notModified.getStatusCodeValue()).isEqualTo(304);
+        assertThat(notModified.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        assertThat(count("not-modified")).isEqualTo(1);
+
+        long map2Modified = respond("squares/2", 2L, null).getHeaders().getLastModified();
+        assertThat(map2Modified).isGreaterThan(map1Modified);
+        assertThat(respond("squares", null, null).getHeaders().getLastModified()).isEqualTo(map2Modified);
+        assertThat(respond("squares", null, map1Modified).getStatusCodeValue()).isEqualTo(200);
+        // Only the two responses of an entry still valid, the 304 of map 1 and the last one of all maps
+        assertThat(count("hit")).isEqualTo(2);
+    }
+
+    private ResponseEntity<byte[]> respond(String key, Long mapId, Long ifModifiedSince) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/map/");
+        if (ifModifiedSince != null) {
+            request.addHeader(HttpHeaders.IF_MODIFIED_SINCE, ifModifiedSince);
+        }
+        return mapResponseCache.respond(key, mapId, MediaType.APPLICATION_JSON, () -> List.of(key),
+                new ServletWebRequest(request, new MockHttpServletResponse()));
+    }
+
+    private double count(String result) {
+        Counter counter = meterRegistry.find("yul.map.response.requests").tag("result", result).counter();
+        return counter.count();
+    }
+}
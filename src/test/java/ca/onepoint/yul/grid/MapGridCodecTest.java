@@ -0,0 +1,164 @@
+package ca.onepoint.yul.grid;
+
+import ca.onepoint.yul.entity.Map;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Grids through an encoding and a decoding, and bytes the codec must not take for a grid.
+ */
+class MapGridCodecTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void montrealRoundTrips() throws IOException {
+        Map map = new Map();
+        map.setId(1);
+        map.setName("Montreal");
+        map.setVersion(3);
+        map.setMap(montrealJson());
+        MapGrid grid = MapGridParser.parse(map);
+        assertThat(grid.getWidth() * grid.getHeight()).isGreaterThan(0);
+
+        assertRoundTrips(grid);
+    }
+
+    @Test
+    void syntheticGridRoundTrips() {
+        int width = 90;
+        int height = 70;
+        byte[] values = new byte[width * height];
+        short[] images = new short[width * height];
+        for (int cell = 0; cell < values.length; cell++) {
+            // Runs of a few squares, as roads and buildings make them
+            if (cell == 0 || random.nextInt(4) == 0) {
+                values[cell] = (byte) random.nextInt(Byte.MAX_VALUE + 1);
+                images[cell] = (short) random.nextInt(12);
+            } else {
+                values[cell] = values[cell - 1];
+                images[cell] = images[cell - 1];
+            }
+        }
+
+        assertRoundTrips(new MapGrid(7L, "synthetic", 0, width, height, values, images, palette(12)));
+    }
+
+    @Test
+    void longRunRoundTrips() {
+        int width = 400;
+        int height = 3;
+        byte[] values = new byte[width * height];
+        short[] images = new short[width * height];
+        Arrays.fill(values, (byte) 1);
+        // A single run of 1200 squares but the last one
+        values[values.length - 1] = 0;
+        images[values.length - 1] = 1;
+        MapGrid grid = new MapGrid(2L, "long run", 1, width, height, values, images, palette(2));
+
+        byte[] encoded = assertRoundTrips(grid);
+        assertThat(encoded.length).isLessThan(values.length / 10);
+    }
+
+    @Test
+    void largePaletteRoundTrips() {
+        int images = 300;
+        int width = images;
+        int height = 2;
+        byte[] values = new byte[width * height];
+        short[] squareImages = new short[width * height];
+        for (int cell = 0; cell < values.length; cell++) {
+            values[cell] = (byte) (cell % (Byte.MAX_VALUE + 1));
+            squareImages[cell] = (short) (cell % images);
+        }
+
+        assertRoundTrips(new MapGrid(3L, "large palette", 2, width, height, values, squareImages, palette(images)));
+    }
+
+    @Test
+    void emptyGridRoundTrips() {
+        assertRoundTrips(new MapGrid(4L, "empty", 0, 0, 0, new byte[0], new short[0], new String[0]));
+    }
+
+    @Test
+    void truncatedInputIsRejected() {
+        byte[] encoded = MapGridCodec.encode(smallGrid());
+        for (int length = 0; length < encoded.length; length++) {
+            byte[] truncated = Arrays.copyOf(encoded, length);
+            assertThatThrownBy(() -> MapGridCodec.decode(5L, "small", 0, truncated))
+                    .as("first %d of %d bytes", length, encoded.length)
+                    .isInstanceOf(IllegalArgumentException.class);
+        }
+    }
+
+    @Test
+    void trailingBytesAreRejected() {
+        byte[] encoded = MapGridCodec.encode(smallGrid());
+        byte[] trailing = Arrays.copyOf(encoded, encoded.length + 1);
+
+        assertThatThrownBy(() -> MapGridCodec.decode(5L, "small", 0, trailing))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Trailing bytes");
+    }
+
+    @Test
+    void unknownFormatIsRejected() {
+        byte[] encoded = MapGridCodec.encode(smallGrid());
+        encoded[0] = 2;
+
+        assertThatThrownBy(() -> MapGridCodec.decode(5L, "small", 0, encoded))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Unknown format");
+    }
+
+    private static byte[] assertRoundTrips(MapGrid grid) {
+        byte[] encoded = MapGridCodec.encode(grid);
+        MapGrid decoded = MapGridCodec.decode(grid.getId(), grid.getName(), grid.getVersion(), encoded);
+
+        assertThat(decoded.getId()).isEqualTo(grid.getId());
+        assertThat(decoded.getName()).isEqualTo(grid.getName());
+        assertThat(decoded.getVersion()).isEqualTo(grid.getVersion());
+        assertThat(decoded.getWidth()).isEqualTo(grid.getWidth());
+        assertThat(decoded.getHeight()).isEqualTo(grid.getHeight());
+        assertThat(decoded.getValues()).isEqualTo(grid.getValues());
+        assertThat(decoded.getImages()).isEqualTo(grid.getImages());
+        assertThat(decoded.getPalette()).isEqualTo(grid.getPalette());
+        return encoded;
+    }
+
+    private static MapGrid smallGrid() {
+        byte[] values = {0, 1, 1, 1, 0, 0};
+        short[] images = {0, 1, 1, 1, 2, 2};
+        return new MapGrid(5L, "small", 0, 3, 2, values, images, palette(3));
+    }
+
+    private static String[] palette(int size) {
+        String[] palette = new String[size];
+        for (int i = 0; i < size; i++) {
+            // Non-ASCII names too, the lengths are in UTF-8 bytes
+            palette[i] = "../assets/images/tuile_" + i + (i % 2 == 0 ? "_é" : "") + ".png";
+        }
+        return palette;
+    }
+
+    /**
+     * The grid inserted for Montreal by data.sql.
+     */
+    private static String montrealJson() throws IOException {
+        String data;
+        try (InputStream in = MapGridCodecTest.class.getResourceAsStream("/data.sql")) {
+            data = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String start = "values ('Montreal', '";
+        int from = data.indexOf(start) + start.length();
+        return data.substring(from, data.indexOf("')", from));
+    }
+}
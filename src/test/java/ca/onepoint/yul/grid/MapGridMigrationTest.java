@@ -0,0 +1,48 @@
+package ca.onepoint.yul.grid;
+
+import ca.onepoint.yul.entity.Map;
+import ca.onepoint.yul.repository.MapRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MapGridMigrationTest {
+
+    private static final String GRID = "[[{\"value\":\"1\",\"image\":\"route.png\"},{\"value\":\"0\",\"image\":\"parc.png\"}]]";
+
+    private final MapRepository mapRepository = mock(MapRepository.class);
+    private final MapGridCache mapGridCache = mock(MapGridCache.class);
+    private final MapGridMigration migration = new MapGridMigration();
+
+    @Test
+    void mapThatFailsIsSkipped() {
+        ReflectionTestUtils.setField(migration, "mapRepository", mapRepository);
+        ReflectionTestUtils.setField(migration, "mapGridCache", mapGridCache);
+        when(mapRepository.findAllMap()).thenReturn(List.of(map(1, "[[{\"value\":\"1\""), map(2, GRID), map(3, "[[{\"value\":\"200\",\"image\":\"route.png\"}]]")));
+        when(mapRepository.updateGrid(any(), any(), any())).thenReturn(1);
+
+        assertThat(migration.migrate()).isEqualTo(1);
+        verify(mapRepository, never()).updateGrid(eq(1), any(), any());
+        verify(mapRepository).updateGrid(eq(2), eq(0), any());
+        verify(mapRepository, never()).updateGrid(eq(3), any(), any());
+        verify(mapGridCache).evict(2L);
+    }
+
+    private static Map map(int id, String json) {
+        Map map = new Map();
+        map.setId(id);
+        map.setName("map " + id);
+        map.setVersion(0);
+        map.setMap(json);
+        return map;
+    }
+}
@@ -0,0 +1,162 @@
+package ca.onepoint.yul.occupancy;
+
+import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.entity.Avatar;
+import ca.onepoint.yul.repository.AvatarRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * The index against a brute-force scan of the same avatars, through random moves, saves, removals and queries.
+ */
+class AvatarSpatialIndexTest {
+
+    private static final int SPAN = 60;
+    private static final int TYPES = 3;
+
+    private final Random random = new Random(42);
+    /** Avatars as the index should hold them : type (null when unknown), x and y (null when unplaced) */
+    private final HashMap<Integer, Integer[]> avatars = new HashMap<>();
+
+    @Test
+    void queriesMatchBruteForce() {
+        for (int bucketSize : new int[]{1, 4, 8, 25}) {
+            avatars.clear();
+            List<Avatar> loaded = new ArrayList<>();
+            for (int id = 1; id <= 200; id++) {
+                Avatar avatar = avatar(id, 1 + random.nextInt(TYPES), coordinate(), coordinate());
+                loaded.add(avatar);
+                avatars.put(id, new Integer[]{avatar.getType(), avatar.getX(), avatar.getY()});
+            }
+            AvatarSpatialIndex index = index(loaded, bucketSize);
+
+            for (int step = 0; step < 3000; step++) {
+                int action = random.nextInt(10);
+                int id = 1 + random.nextInt(240);
+                if (action < 5) {
+                    int x = coordinate();
+                    int y = coordinate();
+                    index.move(id, x, y, 0);
+                    Integer[] known = avatars.get(id);
+                    avatars.put(id, new Integer[]{known == null ? null : known[0], x, y});
+                } else if (action < 7) {
+                    // Some saved without a position, they leave the index
+                    Avatar avatar = avatar(id, 1 + random.nextInt(TYPES), random.nextInt(8) == 0 ? null : coordinate(), coordinate());
+                    index.save(avatar);
+                    avatars.put(id, new Integer[]{avatar.getType(), avatar.getX(), avatar.getY()});
+                } else if (action < 8) {
+                    index.remove(id);
+                    avatars.remove(id);
+                } else {
+                    int x = coordinate();
+                    int y = coordinate();
+                    List<Integer> types = types();
+                    int radius = random.nextInt(30);
+                    assertThat(ids(index.within(x, y, radius, types)))
+                            .as("within %d of (%d, %d), types %s, buckets of %d", radius, x, y, types, bucketSize)
+                            .isEqualTo(bruteForce(x, y, types).stream()
+                                    .filter(avatar -> distance(avatar, x, y) <= (long) radius * radius)
+                                    .map(avatar -> avatar[3]).collect(Collectors.toList()));
+                    int k = 1 + random.nextInt(12);
+                    assertThat(ids(index.nearest(x, y, k, types)))
+                            .as("%d nearest to (%d, %d), types %s, buckets of %d", k, x, y, types, bucketSize)
+                            .isEqualTo(bruteForce(x, y, types).stream().limit(k)
+                                    .map(avatar -> avatar[3]).collect(Collectors.toList()));
+                }
+            }
+        }
+    }
+
+    @Test
+    void nearestLooksBeyondTheFirstRingHoldingAvatars() {
+        // (9, 0) is in the bucket next to the query, (0, 7) two rings away but closer
+        AvatarSpatialIndex index = index(List.of(avatar(1, 1, 9, 0), avatar(2, 1, 0, 7)), 4);
+        assertThat(ids(index.nearest(0, 0, 1, null))).containsExactly(2);
+    }
+
+    @Test
+    void tiesAreBrokenById() {
+        AvatarSpatialIndex index = index(List.of(avatar(3, 1, 2, 0), avatar(1, 1, 0, 2), avatar(2, 1, -2, 0)), 2);
+        assertThat(ids(index.nearest(0, 0, 2, null))).containsExactly(1, 2);
+        assertThat(ids(index.within(0, 0, 2, null))).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void movedAvatarLeavesItsBucketAndItsTypeBucket() {
+        AvatarSpatialIndex index = index(List.of(avatar(1, 2, 0, 0)), 4);
+        index.move(1, 40, 40, 0);
+        assertThat(index.within(0, 0, 10, null)).isEmpty();
+        assertThat(index.within(0, 0, 10, List.of(2))).isEmpty();
+        assertThat(ids(index.within(40, 40, 0, List.of(2)))).containsExactly(1);
+    }
+
+    private AvatarSpatialIndex index(List<Avatar> loaded, int bucketSize) {
+        AvatarRepository repository = mock(AvatarRepository.class);
+        when(repository.findAll()).thenReturn(loaded);
+        AvatarSpatialIndex index = new AvatarSpatialIndex();
+        ReflectionTestUtils.setField(index, "avatarRepository", repository);
+        ReflectionTestUtils.setField(index, "bucketSize", bucketSize);
+        return index;
+    }
+
+    /**
+     * The placed avatars of the types, as {type, x, y, id}, the nearest first then by id.
+     */
+    private List<Integer[]> bruteForce(int x, int y, Collection<Integer> types) {
+        return avatars.entrySet().stream()
+                .filter(entry -> entry.getValue()[1] != null && entry.getValue()[2] != null)
+                .filter(entry -> types.isEmpty() || types.contains(entry.getValue()[0]))
+                .map(entry -> new Integer[]{entry.getValue()[0], entry.getValue()[1], entry.getValue()[2], entry.getKey()})
+                .sorted(Comparator.<Integer[]>comparingLong(avatar -> distance(avatar, x, y)).thenComparing(avatar -> avatar[3]))
+                .collect(Collectors.toList());
+    }
+
+    private static long distance(Integer[] avatar, int x, int y) {
+        long dx = avatar[1] - x;
+        long dy = avatar[2] - y;
+        return dx * dx + dy * dy;
+    }
+
+    private List<Integer> types() {
+        List<Integer> types = new ArrayList<>();
+        for (int type = 1; type <= TYPES; type++) {
+            if (random.nextBoolean()) {
+                types.add(type);
+            }
+        }
+        return types;
+    }
+
+    private int coordinate() {
+        // Around the origin, so that negative buckets are used too
+        return random.nextInt(SPAN) - SPAN / 4;
+    }
+
+    private static List<Integer> ids(List<AvatarDto> found) {
+        return found.stream().map(AvatarDto::getId).collect(Collectors.toList());
+    }
+
+    private static Avatar avatar(int id, int type, Integer x, Integer y) {
+        Avatar avatar = new Avatar();
+        avatar.setId(id);
+        avatar.setName("avatar " + id);
+        avatar.setType(type);
+        avatar.setWaiting(0);
+        avatar.setMain(0);
+        avatar.setX(x);
+        avatar.setY(y);
+        return avatar;
+    }
+}
@@ -0,0 +1,121 @@
+package ca.onepoint.yul.pathfinding;
+
+import ca.onepoint.yul.grid.MapGrid;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The compiled edges of each cell against its walkable neighbours in the 4 directions, then the walkable
+ * targets of its links in link order, enumerated from the grid.
+ */
+class MapGraphTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    void edgesMatchNeighboursAndLinks() {
+        // Each link of (1, 1) : to a road, to a wall, to the same road twice, to a shop
+        byte[] values = {
+                1, 1, 0, 1,
+                0, 1, 1, 3,
+                1, 0, 1, 4};
+        MapGrid grid = grid(4, 3, values);
+        int[] linkFrom = {grid.index(1, 1), grid.index(1, 1), grid.index(3, 2), grid.index(1, 1), grid.index(1, 1), grid.index(2, 0)};
+        int[] linkTo = {grid.index(3, 0), grid.index(2, 0), grid.index(1, 1), grid.index(3, 0), grid.index(3, 1), grid.index(0, 2)};
+        MapGraph graph = new MapGraph(grid, linkFrom, linkTo);
+
+        assertEdges(graph);
+        // Up, right, then its links but the one to the wall
+        assertThat(edges(graph, grid.index(1, 1))).containsExactly(grid.index(1, 0), grid.index(2, 1),
+                grid.index(3, 0), grid.index(3, 0), grid.index(3, 1));
+        // A wall has edges too, a search may start from it
+        assertThat(edges(graph, grid.index(2, 0))).containsExactly(grid.index(3, 0), grid.index(2, 1), grid.index(1, 0), grid.index(0, 2));
+        assertThat(graph.hasLinks(grid.index(2, 0))).isTrue();
+        assertThat(graph.hasLinks(grid.index(0, 0))).isFalse();
+    }
+
+    @Test
+    void randomGraphsMatch() {
+        int[][] sizes = {{1, 1}, {1, 9}, {9, 1}, {2, 2}, {17, 5}, {30, 30}, {64, 33}};
+        for (int[] size : sizes) {
+            for (int round = 0; round < 10; round++) {
+                int cells = size[0] * size[1];
+                byte[] values = new byte[cells];
+                for (int cell = 0; cell < cells; cell++) {
+                    values[cell] = (byte) random.nextInt(5);
+                }
+                int links = random.nextInt(2 * cells + 1);
+                int[] linkFrom = new int[links];
+                int[] linkTo = new int[links];
+                for (int link = 0; link < links; link++) {
+                    // Few sources : several links leave the same cell
+                    linkFrom[link] = random.nextInt(Math.max(1, cells / 4));
+                    linkTo[link] = random.nextInt(cells);
+                }
+
+                assertEdges(new MapGraph(grid(size[0], size[1], values), linkFrom, linkTo));
+            }
+        }
+    }
+
+    private static void assertEdges(MapGraph graph) {
+        int[] offsets = graph.getOffsets();
+        assertThat(offsets).hasSize(graph.size() + 1);
+        assertThat(offsets[0]).isZero();
+        assertThat(offsets[graph.size()]).isEqualTo(graph.getTargets().length);
+        for (int cell = 0; cell < graph.size(); cell++) {
+            List<Integer> neighbours = neighbours(graph, cell);
+            List<Integer> expected = new ArrayList<>(neighbours);
+            for (int link = 0; link < graph.getLinkCount(); link++) {
+                if (graph.getLinkFrom(link) == cell && walkable(graph, graph.getLinkTo(link))) {
+                    expected.add(graph.getLinkTo(link));
+                }
+            }
+            assertThat(edges(graph, cell)).as("edges of %d", cell).isEqualTo(expected);
+            assertThat(graph.firstLinkEdge(cell)).as("first link edge of %d", cell).isEqualTo(offsets[cell] + neighbours.size());
+            assertThat(graph.isWalkable(cell)).as("walkable %d", cell).isEqualTo(walkable(graph, cell));
+        }
+    }
+
+    private static List<Integer> edges(MapGraph graph, int cell) {
+        int[] offsets = graph.getOffsets();
+        List<Integer> edges = new ArrayList<>();
+        Arrays.stream(graph.getTargets(), offsets[cell], offsets[cell + 1]).forEach(edges::add);
+        return edges;
+    }
+
+    /**
+     * The walkable squares up, right, down and left of the cell.
+     */
+    private static List<Integer> neighbours(MapGraph graph, int cell) {
+        int width = graph.getWidth();
+        int x = cell % width;
+        int y = cell / width;
+        List<Integer> neighbours = new ArrayList<>();
+        int[][] steps = {{0, -1}, {1, 0}, {0, 1}, {-1, 0}};
+        for (int[] step : steps) {
+            int nx = x + step[0];
+            int ny = y + step[1];
+            if (graph.getGrid().contains(nx, ny) && walkable(graph, nx + ny * width)) {
+                neighbours.add(nx + ny * width);
+            }
+        }
+        return neighbours;
+    }
+
+    private static boolean walkable(MapGraph graph, int cell) {
+        // 1 is a road, 3 a shop or company, 4 the finish
+        int value = graph.getGrid().getValues()[cell];
+        return value == 1 || value == 3 || value == 4;
+    }
+
+    private static MapGrid grid(int width, int height, byte[] values) {
+        return new MapGrid(1L, "graph", 0, width, height, values, new short[values.length], new String[]{"route.png"});
+    }
+}
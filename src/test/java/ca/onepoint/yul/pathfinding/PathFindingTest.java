@@ -0,0 +1,213 @@
+package ca.onepoint.yul.pathfinding;
+
+import ca.onepoint.yul.entity.Map;
+import ca.onepoint.yul.grid.MapGrid;
+import ca.onepoint.yul.grid.MapGridParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The paths of every algorithm against a breadth-first search on the squares and the links, with avatars
+ * in the way : A*, JPS and the distance fields must find a shortest path, HPA any path, all of them only
+ * when there is one.
+ */
+class PathFindingTest {
+
+    // The subway of data.sql, both ways between (9, 8) or (8, 9) and (15, 26) or (16, 25)
+    private static final int[][] MONTREAL_LINKS = {
+            {9, 8, 15, 26}, {15, 26, 9, 8}, {9, 8, 16, 25}, {16, 25, 9, 8},
+            {8, 9, 15, 26}, {15, 26, 8, 9}, {8, 9, 16, 25}, {16, 25, 8, 9}};
+
+    private final Random random = new Random(7);
+
+    @Test
+    void montrealPathsAreShortest() throws IOException {
+        MapGrid grid = MapGridParser.parse(montreal());
+        int[] linkFrom = new int[MONTREAL_LINKS.length];
+        int[] linkTo = new int[MONTREAL_LINKS.length];
+        for (int link = 0; link < MONTREAL_LINKS.length; link++) {
+            linkFrom[link] = grid.index(MONTREAL_LINKS[link][0], MONTREAL_LINKS[link][1]);
+            linkTo[link] = grid.index(MONTREAL_LINKS[link][2], MONTREAL_LINKS[link][3]);
+        }
+
+        // The pedestrians take the subway, the vehicles don't
+        checkPaths(new MapGraph(grid, linkFrom, linkTo), 600);
+        checkPaths(new MapGraph(grid, new int[0], new int[0]), 300);
+    }
+
+    @Test
+    void syntheticPathsAreShortest() {
+        // Several clusters of HPA each way
+        int width = 70;
+        int height = 45;
+        byte[] values = new byte[width * height];
+        for (int cell = 0; cell < values.length; cell++) {
+            int draw = random.nextInt(100);
+            values[cell] = (byte) (draw < 30 ? 0 : draw < 33 ? 3 : draw < 34 ? 4 : 1);
+        }
+        MapGrid grid = new MapGrid(9L, "synthetic", 0, width, height, values, new short[values.length], new String[]{"route.png"});
+        int links = 12;
+        int[] linkFrom = new int[links];
+        int[] linkTo = new int[links];
+        for (int link = 0; link < links; link++) {
+            linkFrom[link] = random.nextInt(values.length);
+            linkTo[link] = random.nextInt(values.length);
+        }
+
+        checkPaths(new MapGraph(grid, linkFrom, linkTo), 800);
+    }
+
+    /**
+     * Random searches in two rounds, the avatars moved in between.
+     */
+    private void checkPaths(MapGraph graph, int searches) {
+        List<Integer> walkable = new ArrayList<>();
+        for (int cell = 0; cell < graph.size(); cell++) {
+            if (graph.isWalkable(cell)) {
+                walkable.add(cell);
+            }
+        }
+        HierarchicalGraph hierarchy = new HierarchicalGraph(8);
+        for (int round = 1; round <= 2; round++) {
+            CellSet blocked = new CellSet(graph.size());
+            for (int cell : walkable) {
+                if (random.nextInt(20) == 0) {
+                    blocked.add(cell);
+                }
+            }
+            for (int search = 0; search < searches; search++) {
+                // The start may be under an avatar, its own square, the target may not
+                int from = walkable.get(random.nextInt(walkable.size()));
+                int to = walkable.get(random.nextInt(walkable.size()));
+                if (blocked.contains(to)) {
+                    continue;
+                }
+                int shortest = shortest(graph, blocked, from, to);
+                String query = from + " -> " + to + ", round " + round;
+
+                assertShortest(graph, blocked, from, to, AStarPathFinder.findPath(graph, blocked, from, to), shortest, "A* " + query);
+                assertShortest(graph, blocked, from, to, JumpPointSearch.findPath(graph, blocked, from, to), shortest, "JPS " + query);
+                int[] hpa = hierarchy.findPath(graph, blocked, round, from, to);
+                if (shortest < 0) {
+                    assertThat(hpa).as("HPA " + query).isNull();
+                } else {
+                    assertThat(hpa).as("HPA " + query).isNotNull();
+                    assertPath(graph, blocked, from, to, hpa, "HPA " + query);
+                    assertThat(hpa.length).as("HPA " + query).isGreaterThanOrEqualTo(shortest);
+                }
+
+                DistanceField field = DistanceField.compute(graph, to);
+                assertThat(field.distance(from)).as("distance " + query).isEqualTo(shortest(graph, new CellSet(graph.size()), from, to));
+                int[] descent = field.descend(blocked, from);
+                if (descent != null) {
+                    assertShortest(graph, blocked, from, to, descent, shortest, "descent " + query);
+                }
+                assertShortest(graph, blocked, from, to, AStarPathFinder.findPath(graph, blocked, from, to, field, null), shortest, "guided A* " + query);
+            }
+        }
+    }
+
+    private static void assertShortest(MapGraph graph, CellSet blocked, int from, int to, int[] path, int shortest, String query) {
+        if (shortest < 0) {
+            assertThat(path).as(query).isNull();
+            return;
+        }
+        assertThat(path).as(query).isNotNull();
+        assertPath(graph, blocked, from, to, path, query);
+        assertThat(path.length).as(query).isEqualTo(shortest);
+    }
+
+    /**
+     * Every move to a free square next to the previous one or at the end of one of its links, the last one the target.
+     */
+    private static void assertPath(MapGraph graph, CellSet blocked, int from, int to, int[] path, String query) {
+        int current = from;
+        for (int next : path) {
+            assertThat(moves(graph, current)).as(query + ", move from " + current).contains(next);
+            assertThat(blocked.contains(next)).as(query + ", through " + next).isFalse();
+            current = next;
+        }
+        assertThat(current).as(query).isEqualTo(to);
+    }
+
+    /**
+     * @return the number of moves of the shortest path, -1 when there is none
+     */
+    private static int shortest(MapGraph graph, CellSet blocked, int from, int to) {
+        int[] distances = new int[graph.size()];
+        Arrays.fill(distances, -1);
+        distances[from] = 0;
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        queue.add(from);
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            if (cell == to) {
+                return distances[cell];
+            }
+            for (int next : moves(graph, cell)) {
+                if (distances[next] < 0 && !blocked.contains(next)) {
+                    distances[next] = distances[cell] + 1;
+                    queue.add(next);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The walkable squares next to the cell and the walkable ends of its links, from the grid rather than from the graph.
+     */
+    private static List<Integer> moves(MapGraph graph, int cell) {
+        int width = graph.getWidth();
+        int x = cell % width;
+        int y = cell / width;
+        List<Integer> moves = new ArrayList<>();
+        int[][] steps = {{0, -1}, {1, 0}, {0, 1}, {-1, 0}};
+        for (int[] step : steps) {
+            int nx = x + step[0];
+            int ny = y + step[1];
+            if (graph.getGrid().contains(nx, ny) && walkable(graph, nx + ny * width)) {
+                moves.add(nx + ny * width);
+            }
+        }
+        for (int link = 0; link < graph.getLinkCount(); link++) {
+            if (graph.getLinkFrom(link) == cell && walkable(graph, graph.getLinkTo(link))) {
+                moves.add(graph.getLinkTo(link));
+            }
+        }
+        return moves;
+    }
+
+    private static boolean walkable(MapGraph graph, int cell) {
+        // 1 is a road, 3 a shop or company, 4 the finish
+        int value = graph.getGrid().getValues()[cell];
+        return value == 1 || value == 3 || value == 4;
+    }
+
+    /**
+     * The map inserted for Montreal by data.sql.
+     */
+    private static Map montreal() throws IOException {
+        String data;
+        try (InputStream in = PathFindingTest.class.getResourceAsStream("/data.sql")) {
+            data = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String start = "values ('Montreal', '";
+        int from = data.indexOf(start) + start.length();
+        Map map = new Map();
+        map.setId(1);
+        map.setName("Montreal");
+        map.setMap(data.substring(from, data.indexOf("')", from)));
+        return map;
+    }
+}
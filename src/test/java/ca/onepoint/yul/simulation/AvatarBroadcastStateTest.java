@@ -0,0 +1,113 @@
+package ca.onepoint.yul.simulation;
+
+import ca.onepoint.yul.dto.AvatarDto;
+import ca.onepoint.yul.dto.AvatarMoveDto;
+import ca.onepoint.yul.entity.Avatar;
+import ca.onepoint.yul.exception.InvalidQueryException;
+import ca.onepoint.yul.occupancy.AvatarOccupancyListener;
+import ca.onepoint.yul.occupancy.AvatarSpatialIndex;
+import ca.onepoint.yul.occupancy.OccupancyGrid;
+import ca.onepoint.yul.repository.AvatarRepository;
+import ca.onepoint.yul.service.IAvatarService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Avatars saved or deleted after the first snapshot, through the JPA listener rather than the moves of the simulation.
+ */
+class AvatarBroadcastStateTest {
+
+    private final AvatarBroadcastState avatarBroadcastState = new AvatarBroadcastState();
+    private final AvatarOccupancyListener listener = new AvatarOccupancyListener();
+
+    @BeforeEach
+    void setUp() {
+        IAvatarService avatarService = mock(IAvatarService.class);
+        when(avatarService.getAllAvatars()).thenReturn(List.of(new AvatarDto(1, "Loaded", 1, "pieton.png", 0, 0, 2, 3)));
+        ReflectionTestUtils.setField(avatarBroadcastState, "iAvatarService", avatarService);
+        ReflectionTestUtils.setField(avatarBroadcastState, "regionSize", 16);
+
+        AvatarRepository avatarRepository = mock(AvatarRepository.class);
+        AvatarSpatialIndex avatarSpatialIndex = new AvatarSpatialIndex();
+        ReflectionTestUtils.setField(avatarSpatialIndex, "avatarRepository", avatarRepository);
+        ReflectionTestUtils.setField(avatarSpatialIndex, "bucketSize", 8);
+        ReflectionTestUtils.setField(listener, "occupancyGrid", provider(mock(OccupancyGrid.class)));
+        ReflectionTestUtils.setField(listener, "avatarSpatialIndex", provider(avatarSpatialIndex));
+        ReflectionTestUtils.setField(listener, "avatarBroadcastState", provider(avatarBroadcastState));
+    }
+
+    @Test
+    void savedAvatarIsInTheSnapshots() throws InvalidQueryException {
+        assertThat(ids(avatarBroadcastState.snapshot().getAvatars())).containsExactly(1);
+
+        listener.onAvatarSaved(avatar(2, "Saved", 20, 5));
+
+        List<AvatarDto> snapshot = avatarBroadcastState.snapshot().getAvatars();
+        assertThat(ids(snapshot)).containsExactly(1, 2);
+        assertThat(snapshot.get(1).getName()).isEqualTo("Saved");
+        assertThat(snapshot.get(1).getX()).isEqualTo(20);
+        assertThat(ids(avatarBroadcastState.regionSnapshot(1, 0).getAvatars())).containsExactly(2);
+        assertThat(avatarBroadcastState.regionSnapshot(0, 0).getAvatars()).hasSize(1);
+
+        // Its position goes out with the next tick, even without a move
+        AvatarBroadcastState.Deltas deltas = avatarBroadcastState.delta(List.of());
+        assertThat(deltas.getAll().getAvatars()).extracting(AvatarMoveDto::getId).containsExactly(2);
+        assertThat(deltas.getRegions()).containsOnlyKeys("/topic/region/1/0");
+        assertThat(avatarBroadcastState.delta(List.of())).isNull();
+    }
+
+    @Test
+    void movedAvatarChangesRegion() throws InvalidQueryException {
+        avatarBroadcastState.snapshot();
+
+        listener.onAvatarSaved(avatar(1, "Loaded", 40, 3));
+
+        assertThat(avatarBroadcastState.regionSnapshot(0, 0).getAvatars()).isEmpty();
+        assertThat(ids(avatarBroadcastState.regionSnapshot(2, 0).getAvatars())).containsExactly(1);
+        assertThat(avatarBroadcastState.delta(List.of()).getRegions()).containsOnlyKeys("/topic/region/0/0", "/topic/region/2/0");
+    }
+
+    @Test
+    void removedAvatarLeavesTheSnapshots() throws InvalidQueryException {
+        avatarBroadcastState.snapshot();
+
+        listener.onAvatarRemoved(avatar(1, "Loaded", 2, 3));
+
+        assertThat(avatarBroadcastState.snapshot().getAvatars()).isEmpty();
+        assertThat(avatarBroadcastState.regionSnapshot(0, 0).getAvatars()).isEmpty();
+    }
+
+    private static Avatar avatar(int id, String name, int x, int y) {
+        Avatar avatar = new Avatar();
+        avatar.setId(id);
+        avatar.setName(name);
+        avatar.setType(1);
+        avatar.setImage("pieton.png");
+        avatar.setWaiting(0);
+        avatar.setMain(0);
+        avatar.setX(x);
+        avatar.setY(y);
+        avatar.setMapId(1);
+        return avatar;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> ObjectProvider<T> provider(T bean) {
+        ObjectProvider<T> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(bean);
+        return provider;
+    }
+
+    private static List<Integer> ids(List<AvatarDto> avatars) {
+        return avatars.stream().map(AvatarDto::getId).collect(Collectors.toList());
+    }
+}